@@ -0,0 +1,111 @@
+import java.util.SplittableRandom;
+
+/**
+ * The AliasTable class draws from a fixed discrete distribution in constant time.<p>
+ * The table is built once with Vose's alias method; every draw then costs one random int
+ * and one random double, no matter how many outcomes there are.
+ */
+
+public class AliasTable {
+    // instance variables
+    private final double[] probability;
+    private final int[] alias;
+    private final double[] chance;
+
+    /**
+     * Builds the table from the relative weight of each outcome.
+     *
+     * @param weights The weight of each outcome; they don't have to add up to 1.
+     */
+    public AliasTable(double... weights) {
+        int n = weights.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("An alias table needs at least one outcome");
+        }
+        probability = new double[n];
+        alias = new int[n];
+        chance = new double[n];
+
+        double total = 0;
+        for (double weight : weights) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights can't be negative: " + weight);
+            }
+            total += weight;
+        }
+        for (int i = 0; i < n; i++) {
+            chance[i] = weights[i] / total;
+        }
+
+        // scale so that the average weight is 1, then pair each small weight with a large one
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // whatever is left over is 1 apart from rounding errors
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1;
+        }
+    }
+
+    /**
+     * @return The number of outcomes in the table.
+     */
+    public int size() {
+        return probability.length;
+    }
+
+    /**
+     * @param outcome The index of an outcome.
+     * @return The chance of drawing it, from 0 to 1.
+     */
+    public double chanceOf(int outcome) {
+        return chance[outcome];
+    }
+
+    /**
+     * Draws one outcome.
+     *
+     * @param random The random source of the game doing the draw.
+     * @return The index of the outcome drawn.
+     */
+    public int next(SplittableRandom random) {
+        int column = random.nextInt(probability.length);
+        return pick(column, random.nextDouble());
+    }
+
+    /**
+     * Draws one outcome from rolls made elsewhere, for callers that keep their own random state.
+     *
+     * @param column A roll from 0 up to {@link #size()}.
+     * @param roll A roll from 0 up to 1.
+     * @return The index of the outcome drawn.
+     */
+    int pick(int column, double roll) {
+        return roll < probability[column] ? column : alias[column];
+    }
+}
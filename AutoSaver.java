@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The AutoSaver writes snapshots to disk on a background thread, so the game never waits on the disk.<p>
+ * If the game hands over a new snapshot while an older one is still waiting to be written, only the
+ * newest is written. Each save goes to a temporary file that is then moved over the old save,
+ * so a crash mid-write never leaves a broken save behind.
+ */
+
+public class AutoSaver implements AutoCloseable {
+    // instance variables
+    private Path saveFile;
+    private Path tempFile;
+    private AtomicReference<GameSnapshot> pending;
+    private ExecutorService writer;
+
+    /**
+     * @param saveFile The file the game is saved to.
+     */
+    public AutoSaver(Path saveFile) {
+        this.saveFile = saveFile;
+        tempFile = saveFile.resolveSibling(saveFile.getFileName() + ".tmp");
+        pending = new AtomicReference<>();
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a snapshot to be saved and returns straight away.
+     *
+     * @param snapshot The state to save.
+     */
+    public void save(GameSnapshot snapshot) {
+        // only schedule a write if there wasn't one waiting already; that write will pick this snapshot up
+        if (pending.getAndSet(snapshot) == null) {
+            writer.execute(this::writePending);
+        }
+    }
+
+    /**
+     * Loads the game saved in a file.
+     *
+     * @param saveFile The save file.
+     * @return The saved snapshot.
+     * @throws IOException if the file can't be read or isn't a valid save.
+     */
+    public static GameSnapshot load(Path saveFile) throws IOException {
+        return GameSnapshot.fromBytes(Files.readAllBytes(saveFile));
+    }
+
+    /**
+     * Finishes any save still waiting and stops the background thread.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writePending() {
+        GameSnapshot snapshot = pending.getAndSet(null);
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            Files.write(tempFile, snapshot.toBytes());
+            Files.move(tempFile, saveFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the next turn's save will try again
+            System.err.println("Autosave failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * The BatchRunner plays recorded command scripts through the real game loop, without anyone at the keyboard.<p>
+ * A script holds the answers exactly as a player would type them, one per line: the name, the mode letter,
+ * then every menu choice and shop answer. Lines starting with # are comments, except for two settings:
+ * "# seed N" plays the script with a fixed seed, and "# expect won|lost|quit|unfinished" marks the script as
+ * failed when the game ends any other way. A script that expects nothing fails if the game breaks, or if the
+ * script runs out of answers before the game is over. A script whose settings can't be read isn't played,
+ * and fails with the reason.<p>
+ * Scripts are played side by side on a pool of threads with their output thrown away, or written to one
+ * file per script with --capture. One line is reported for every script, then the totals.<p>
+ * Usage: java BatchRunner [--threads n] [--seed n] [--capture directory] [--rules file] script... where each script is a file,
+ * a directory of scripts, or - for scripts on stdin separated by lines of ---
+ */
+
+public class BatchRunner {
+    // constants
+    private static final String SEPARATOR = "---";
+    private static final String SEED = "# seed ";
+    private static final String EXPECT = "# expect ";
+
+    // instance variables
+    private long runSeed;
+    private Path captureDirectory;
+
+    /**
+     * @param runSeed The seed that scripts without a seed of their own get their seed from.
+     * @param captureDirectory Where each script's output is written, or null to throw it away.
+     */
+    public BatchRunner(long runSeed, Path captureDirectory) {
+        this.runSeed = runSeed;
+        this.captureDirectory = captureDirectory;
+    }
+
+    /**
+     * Plays every script on the given executor.
+     *
+     * @param scripts The scripts to play.
+     * @param executor The threads to play them on.
+     * @return The result of every script, in the same order as the scripts.
+     * @throws IOException if a script's output can't be captured.
+     * @throws InterruptedException if the wait for the results is interrupted.
+     */
+    public List<ScriptResult> run(List<Script> scripts, ExecutorService executor) throws IOException, InterruptedException {
+        List<Future<ScriptResult>> pending = new ArrayList<>();
+        for (int i = 0; i < scripts.size(); i++) {
+            Script script = scripts.get(i);
+            long seed = script.seed != null ? script.seed : GameSeeds.forGame(runSeed, i);
+            pending.add(executor.submit(() -> play(script, seed)));
+        }
+        List<ScriptResult> results = new ArrayList<>();
+        for (Future<ScriptResult> result : pending) {
+            try {
+                results.add(result.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Plays one script from the welcome screen until the game ends or the script runs out.
+     *
+     * @param script The script to play.
+     * @param seed The seed of the game.
+     * @return How the game ended.
+     * @throws IOException if the captured output can't be written.
+     */
+    public ScriptResult play(Script script, long seed) throws IOException {
+        if (script.problem != null) {
+            ScriptResult result = new ScriptResult(script, seed);
+            result.outcome = "error";
+            result.error = script.problem;
+            return result;
+        }
+        PrintWriter capture = null;
+        GameWindow window = HeadlessWindow.INSTANCE;
+        if (captureDirectory != null) {
+            capture = new PrintWriter(Files.newBufferedWriter(captureDirectory.resolve(script.name + ".out"), StandardCharsets.UTF_8));
+            window = new TerminalWindow(capture);
+        }
+        GameInput input = GameInput.of(script.input);
+        TreasureHunter game = new TreasureHunter(seed, window, input);
+
+        ScriptResult result = new ScriptResult(script, seed);
+        long start = System.nanoTime();
+        try {
+            game.play();
+            Hunter hunter = game.getHunter();
+            result.outcome = hunter.hasWon() ? "won" : hunter.isGameOver() ? "lost" : "quit";
+        } catch (NoSuchElementException endOfScript) {
+            result.outcome = "unfinished";
+        } catch (RuntimeException e) {
+            result.outcome = "error";
+            result.error = e.toString();
+        }
+        result.nanos = System.nanoTime() - start;
+
+        if (game.getHunter() != null) {
+            result.gold = game.getHunter().getGold();
+        }
+        result.turns = game.getTurns();
+        while (input.hasNextLine()) {
+            input.nextLine();
+            result.unusedLines++;
+        }
+        if (capture != null) {
+            window.flush();
+            capture.close();
+        }
+        return result;
+    }
+
+    /**
+     * Reads the scripts named on the command line.
+     *
+     * @param source A script file, a directory of script files, or - for stdin.
+     * @param scripts Where the scripts that are read are added.
+     * @throws IOException if a script can't be read.
+     */
+    static void readScripts(String source, List<Script> scripts) throws IOException {
+        if (source.equals("-")) {
+            String text = new String(System.in.readAllBytes(), StandardCharsets.UTF_8);
+            splitScripts("stdin", text, scripts);
+            return;
+        }
+        Path path = Path.of(source);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                    scripts.add(Script.parse(file.getFileName().toString(), Files.readString(file)));
+                }
+            }
+        } else {
+            splitScripts(path.getFileName().toString(), Files.readString(path), scripts);
+        }
+    }
+
+    /**
+     * Splits a stream of scripts on the lines that hold only {@value #SEPARATOR}.
+     * A single script keeps the name it was given, several are numbered after it.
+     *
+     * @param name The name of the stream.
+     * @param text Every script in the stream.
+     * @param scripts Where the scripts are added.
+     */
+    private static void splitScripts(String name, String text, List<Script> scripts) {
+        String[] parts = text.split("(?m)^" + SEPARATOR + "$\\R?");
+        for (int i = 0; i < parts.length; i++) {
+            String partName = parts.length == 1 ? name : name + "-" + (i + 1);
+            scripts.add(Script.parse(partName, parts[i]));
+        }
+    }
+
+    /**
+     * A list of answers to type into one game.
+     */
+    public static class Script {
+        private String name;
+        private String input;
+        private Long seed;
+        private String expected;
+        // why the script can't be played, or null if it can
+        private String problem;
+
+        Script(String name, String input, Long seed, String expected) {
+            this.name = name;
+            this.input = input;
+            this.seed = seed;
+            this.expected = expected;
+        }
+
+        /**
+         * Pulls the settings and comments out of a script.
+         *
+         * @param name The name the script is reported under.
+         * @param text The script as it was written.
+         * @return The script, which fails without being played if a setting can't be read.
+         */
+        public static Script parse(String name, String text) {
+            StringBuilder input = new StringBuilder();
+            Long seed = null;
+            String expected = null;
+            String problem = null;
+            for (String line : text.split("\\R")) {
+                if (line.startsWith(SEED)) {
+                    try {
+                        seed = Long.parseLong(line.substring(SEED.length()).trim());
+                    } catch (NumberFormatException e) {
+                        problem = "bad seed line: " + line;
+                    }
+                } else if (line.startsWith(EXPECT)) {
+                    expected = line.substring(EXPECT.length()).trim().toLowerCase();
+                } else if (!line.startsWith("#")) {
+                    input.append(line).append('\n');
+                }
+            }
+            Script script = new Script(name, input.toString(), seed, expected);
+            script.problem = problem;
+            return script;
+        }
+    }
+
+    /**
+     * How one script's game ended.
+     */
+    public static class ScriptResult {
+        private Script script;
+        private long seed;
+        private String outcome;
+        private String error;
+        private int gold;
+        private int turns;
+        private int unusedLines;
+        private long nanos;
+
+        ScriptResult(Script script, long seed) {
+            this.script = script;
+            this.seed = seed;
+        }
+
+        /**
+         * @return true if the game ended the way the script expects, or the script expects nothing
+         * and the game came to an end without failing.
+         */
+        public boolean passed() {
+            if (script.problem != null) {
+                return false;
+            }
+            if (script.expected != null) {
+                return script.expected.equals(outcome);
+            }
+            return !outcome.equals("error") && !outcome.equals("unfinished");
+        }
+
+        public String toString() {
+            String line = String.format("%-4s %-24s %-10s gold %4d  turns %5d  unused %3d  %9.3f ms  seed %d",
+                    passed() ? "ok" : "FAIL", script.name, outcome, gold, turns, unusedLines, nanos / 1e6, seed);
+            if (script.expected != null && !passed()) {
+                line += "  (expected " + script.expected + ")";
+            }
+            if (error != null) {
+                line += "  " + error;
+            }
+            return line;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = new SplittableRandom().nextLong();
+        Path captureDirectory = null;
+        List<Script> scripts = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--rules") && i + 1 < args.length) {
+                Ruleset.install(Ruleset.load(Path.of(args[++i])));
+            } else if (args[i].equals("--capture") && i + 1 < args.length) {
+                captureDirectory = Files.createDirectories(Path.of(args[++i]));
+            } else {
+                readScripts(args[i], scripts);
+            }
+        }
+
+        BatchRunner runner = new BatchRunner(seed, captureDirectory);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<ScriptResult> results;
+        try {
+            results = runner.run(scripts, executor);
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int failed = 0;
+        long turns = 0;
+        for (ScriptResult result : results) {
+            System.out.println(result);
+            if (!result.passed()) {
+                failed++;
+            }
+            turns += result.turns;
+        }
+        System.out.println("Scripts: " + results.size() + ", failed: " + failed + ", threads: " + threads + ", seed: " + seed);
+        System.out.println(String.format("Time: %.2f s (%.0f scripts/second, %.0f turns/second)",
+                seconds, results.size() / seconds, turns / seconds));
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The DistributedSimulation class spreads one {@link Simulation} run over several worker JVMs on this machine.<p>
+ * The coordinator cuts the run's games into ranges and hands them to the workers over their stdin and stdout
+ * pipes. Each worker plays its range on its own fork-join pool and sends back one {@link SimulationResult},
+ * which is a few KB however many games it covers. If a worker dies, or hasn't answered by the range's deadline,
+ * it is killed, the range it was playing goes back on the queue and a new worker is started in its place.<p>
+ * Every game's seed comes from the run's seed and the game's number, and the ranges' results are merged in
+ * range order at the end, so the statistics are the same as a single-JVM run with the same seed, whichever
+ * worker played which range.<p>
+ * Usage: java DistributedSimulation [games] [mode letters] [workers] [seed] [deadline seconds per range]
+ */
+
+public class DistributedSimulation {
+    // constants
+    private static final long GAMES_PER_RANGE = 1 << 16;
+    private static final long STOP = -1;
+    private static final long POLL_MILLIS = 100;
+    private static final int RESTARTS_PER_WORKER = 2;
+    public static final long DEFAULT_RANGE_DEADLINE_MILLIS = 60_000;
+
+    // instance variables
+    private long games;
+    private String modeChoice;
+    private long runSeed;
+    private int workerThreads;
+    private long rangeDeadlineMillis = DEFAULT_RANGE_DEADLINE_MILLIS;
+    private ScheduledExecutorService watchdog;
+    private SimulationResult[] results;
+    private LinkedBlockingQueue<Integer> pending;
+    private AtomicInteger remaining;
+    private AtomicInteger restartsLeft;
+
+    /**
+     * @param games How many games to play.
+     * @param modeChoice The mode letters, as given to {@link Simulation}.
+     * @param runSeed The seed every game's seed is derived from.
+     * @param workerThreads How many threads each worker plays on.
+     */
+    public DistributedSimulation(long games, String modeChoice, long runSeed, int workerThreads) {
+        this.games = games;
+        this.modeChoice = modeChoice;
+        this.runSeed = runSeed;
+        this.workerThreads = workerThreads;
+    }
+
+    /**
+     * Sets how long a worker has to send back a range's result before it is taken to be hung.
+     *
+     * @param millis The deadline of each range, from when it is sent; it has to cover the worker's warm-up too.
+     */
+    public void setRangeDeadline(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("The range deadline must be positive: " + millis);
+        }
+        rangeDeadlineMillis = millis;
+    }
+
+    /**
+     * Plays every game of the run on the given number of worker processes.
+     *
+     * @param workers How many worker JVMs to keep running.
+     * @return The merged results of all the games.
+     * @throws IOException if the workers kept dying and some ranges were never played.
+     * @throws InterruptedException if the wait for the workers is interrupted.
+     */
+    public SimulationResult run(int workers) throws IOException, InterruptedException {
+        int ranges = (int) ((games + GAMES_PER_RANGE - 1) / GAMES_PER_RANGE);
+        results = new SimulationResult[ranges];
+        pending = new LinkedBlockingQueue<>();
+        for (int i = 0; i < ranges; i++) {
+            pending.add(i);
+        }
+        remaining = new AtomicInteger(ranges);
+        restartsLeft = new AtomicInteger(workers * RESTARTS_PER_WORKER);
+
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "range-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // met deadlines are cancelled, and shouldn't pile up in the queue until they would have gone off
+        timer.setRemoveOnCancelPolicy(true);
+        watchdog = timer;
+        Thread[] drivers = new Thread[workers];
+        try {
+            for (int i = 0; i < workers; i++) {
+                int worker = i;
+                drivers[i] = new Thread(() -> driveWorker(worker), "worker-" + i);
+                drivers[i].start();
+            }
+            for (Thread driver : drivers) {
+                driver.join();
+            }
+        } finally {
+            watchdog.shutdownNow();
+        }
+        if (remaining.get() > 0) {
+            throw new IOException(remaining.get() + " of " + ranges + " ranges were never played");
+        }
+
+        SimulationResult result = new SimulationResult();
+        for (SimulationResult range : results) {
+            result.merge(range);
+        }
+        return result;
+    }
+
+    /**
+     * Keeps one worker process fed with ranges until every range is played,
+     * starting a new process whenever the current one dies. A worker that misses a range's deadline is
+     * killed, which ends its read with an error, so it is handled just like one that died.
+     *
+     * @param worker The number of the worker, for messages.
+     */
+    private void driveWorker(int worker) {
+        while (remaining.get() > 0) {
+            Process process = null;
+            Integer range = null;
+            AtomicBoolean timedOut = new AtomicBoolean();
+            try {
+                process = startWorker();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+                while (remaining.get() > 0) {
+                    range = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (range == null) {
+                        // another worker still has ranges out, which come back here if it dies
+                        continue;
+                    }
+                    long from = range * GAMES_PER_RANGE;
+                    out.writeLong(from);
+                    out.writeLong(Math.min(games, from + GAMES_PER_RANGE));
+                    out.flush();
+                    Process hung = process;
+                    ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+                        timedOut.set(true);
+                        hung.destroyForcibly();
+                    }, rangeDeadlineMillis, TimeUnit.MILLISECONDS);
+                    SimulationResult result = SimulationResult.readFrom(in);
+                    deadline.cancel(false);
+                    results[range] = result;
+                    range = null;
+                    remaining.decrementAndGet();
+                }
+                out.writeLong(STOP);
+                out.flush();
+                process.waitFor();
+                return;
+            } catch (IOException e) {
+                if (range != null) {
+                    pending.add(range);
+                }
+                if (process != null) {
+                    process.destroyForcibly();
+                }
+                String death = timedOut.get() ? "missed its range's deadline of " + rangeDeadlineMillis + " ms" : "died";
+                if (restartsLeft.getAndDecrement() <= 0) {
+                    System.err.println("Worker " + worker + " " + death + " and there are no restarts left: " + e);
+                    return;
+                }
+                System.err.println("Worker " + worker + " " + death + ", handing its range to a new one: " + e);
+            } catch (InterruptedException e) {
+                if (process != null) {
+                    process.destroyForcibly();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return A new worker JVM running on the same class path as this one.
+     * @throws IOException if it can't be started.
+     */
+    private Process startWorker() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "DistributedSimulation", "--worker", modeChoice, String.valueOf(runSeed), String.valueOf(workerThreads));
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    /**
+     * Plays the ranges the coordinator sends on stdin, and sends each range's result back on stdout,
+     * until the coordinator says to stop or goes away.
+     *
+     * @param modeChoice The mode letters of the run.
+     * @param runSeed The seed of the run.
+     * @param threads How many threads to play on.
+     * @throws IOException if the coordinator can't be written to.
+     */
+    static void work(String modeChoice, long runSeed, int threads) throws IOException {
+        Simulation simulation = new Simulation(modeChoice, new GreedyPolicy(), runSeed);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+        try {
+            while (true) {
+                long from = in.readLong();
+                if (from == STOP) {
+                    break;
+                }
+                long to = in.readLong();
+                simulation.run(from, to, pool).writeTo(out);
+                out.flush();
+            }
+        } catch (EOFException coordinatorGone) {
+            // nothing is left to send the results to
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--worker")) {
+            work(args[1], Long.parseLong(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        String modeChoice = args.length > 1 ? args[1].toLowerCase() : "n";
+        int cores = Runtime.getRuntime().availableProcessors();
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(1, cores / 2);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : new SplittableRandom().nextLong();
+        int workerThreads = Math.max(1, cores / workers);
+
+        DistributedSimulation simulation = new DistributedSimulation(games, modeChoice, seed, workerThreads);
+        if (args.length > 4) {
+            simulation.setRangeDeadline(Long.parseLong(args[4]) * 1000);
+        }
+        long start = System.nanoTime();
+        SimulationResult result = simulation.run(workers);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(result);
+        System.out.println("Workers: " + workers + " x " + workerThreads + " threads, seed: " + seed);
+        System.out.println(String.format("Time: %.2f s (%.0f games/second)", seconds, games / seconds));
+    }
+}
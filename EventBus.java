@@ -0,0 +1,192 @@
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The EventBus carries a game's {@link GameEvent}s from the game to everything that listens to them,
+ * such as the {@link NewsRenderer}, the {@link GameJournal} and {@link GameMetrics}, without the game
+ * ever waiting on them.<p>
+ * Events go into a ring of preallocated slots, each an event code, an argument and a value, so publishing
+ * one is three array writes and a sequence update, with nothing allocated. Only the game's own thread
+ * publishes. The handlers are run by a drain, which hands every published event to every handler in order
+ * and keeps going until it catches up. The first event published while the bus is idle schedules a drain on
+ * a small shared pool of dispatcher threads, one per processor however many games there are. When the game
+ * needs its handlers to have caught up, or gets a whole ring ahead of them, it runs the drain itself if no
+ * dispatcher has started on it, so a game never waits behind other games' drains.
+ */
+
+public class EventBus {
+    // constants
+    public static final int DEFAULT_CAPACITY = 256;
+    // every bus in the JVM shares these threads; a bus is only ever drained by one thread at a time
+    // the queue is an array, so handing it a drain allocates nothing
+    private static final ExecutorService DISPATCHERS = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(),
+            Runtime.getRuntime().availableProcessors(), 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4096), task -> {
+        Thread thread = new Thread(task, "event-bus");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final long WAIT_NANOS = 10_000;
+
+    /**
+     * Something that listens to a game's events. Handlers are called one event at a time, on a dispatcher
+     * thread or on the game's own thread, but never on two threads at once.
+     */
+    public interface Handler {
+        void onEvent(GameEvent event, int arg, int value);
+    }
+
+    // instance variables
+    private final byte[] codes;
+    private final int[] args;
+    private final int[] values;
+    private final int mask;
+    private volatile Handler[] handlers;
+    // the sequence of the next event to publish, only touched by the game's thread
+    private long next;
+    // how many events have been published, and how many every handler has seen
+    private final AtomicLong published;
+    private final AtomicLong consumed;
+    // a drain has been handed to the dispatchers and hasn't started yet
+    private final AtomicBoolean scheduled;
+    // some thread is draining
+    private final AtomicBoolean draining;
+    // made once, so scheduling a drain allocates nothing
+    private final Runnable drainTask;
+    private volatile RuntimeException failure;
+
+    public EventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity How many events can be waiting for the handlers, rounded up to a power of two.
+     */
+    public EventBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        codes = new byte[size];
+        args = new int[size];
+        values = new int[size];
+        mask = size - 1;
+        handlers = new Handler[0];
+        published = new AtomicLong();
+        consumed = new AtomicLong();
+        scheduled = new AtomicBoolean();
+        draining = new AtomicBoolean();
+        drainTask = () -> {
+            scheduled.set(false);
+            drain();
+        };
+    }
+
+    /**
+     * Adds a handler, which is given every event published from now on.
+     *
+     * @param handler The handler.
+     */
+    public synchronized void subscribe(Handler handler) {
+        Handler[] more = Arrays.copyOf(handlers, handlers.length + 1);
+        more[handlers.length] = handler;
+        handlers = more;
+    }
+
+    /**
+     * Publishes one event. Called only from the game's own thread.
+     *
+     * @param event The kind of event.
+     * @param arg The event's argument.
+     * @param value The event's value.
+     */
+    public void publish(GameEvent event, int arg, int value) {
+        long sequence = next;
+        while (sequence - consumed.get() > mask) {
+            // a whole ring ahead of the handlers, so make room, or wait for the dispatcher that is
+            if (!drain()) {
+                LockSupport.parkNanos(WAIT_NANOS);
+            }
+        }
+        int slot = (int) sequence & mask;
+        codes[slot] = event.code();
+        args[slot] = arg;
+        values[slot] = value;
+        next = sequence + 1;
+        published.set(next);
+        schedule();
+    }
+
+    /**
+     * Waits until the handlers have seen every event published so far, without reporting any that failed.
+     * Called only from the game's own thread, such as at the end of every turn.
+     */
+    public void catchUp() {
+        while (consumed.get() < next) {
+            if (!drain()) {
+                LockSupport.parkNanos(WAIT_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Waits until the handlers have seen every event published so far. Called only from the game's own thread.
+     *
+     * @throws RuntimeException the first exception a handler threw, if one did.
+     */
+    public void awaitDrained() {
+        catchUp();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void schedule() {
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            try {
+                DISPATCHERS.execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                // every dispatcher is behind, so the game drains for itself the next time it waits
+                scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Hands out events until the handlers have caught up with the game, unless another thread is already doing so.
+     *
+     * @return false if another thread was draining.
+     */
+    private boolean drain() {
+        if (!draining.compareAndSet(false, true)) {
+            return false;
+        }
+        while (true) {
+            long from = consumed.get();
+            long to = published.get();
+            Handler[] current = handlers;
+            for (long sequence = from; sequence < to; sequence++) {
+                int slot = (int) sequence & mask;
+                GameEvent event = GameEvent.fromCode(codes[slot]);
+                for (Handler handler : current) {
+                    try {
+                        handler.onEvent(event, args[slot], values[slot]);
+                    } catch (RuntimeException e) {
+                        if (failure == null) {
+                            failure = e;
+                        }
+                    }
+                }
+            }
+            consumed.set(to);
+            draining.set(false);
+            // an event published after the last read of published may have found this drain still running
+            if (published.get() == to || !draining.compareAndSet(false, true)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The GameActionEvent is a Flight Recorder event for one menu action, from the choice being read
+ * to the game being ready for the next one.<p>
+ * When no recording is asking for it, beginning and committing one of these costs almost nothing.
+ */
+
+@Name("treasurehunter.GameAction")
+@Label("Game Action")
+@Category("Treasure Hunter")
+@Description("One menu choice processed by a game")
+public class GameActionEvent extends Event {
+    @Label("Action")
+    String action;
+
+    @Label("Terrain")
+    String terrain;
+
+    @Label("Gold")
+    int gold;
+}
@@ -0,0 +1,98 @@
+/**
+ * The GameEvent enum lists everything the {@link GameJournal} records.<p>
+ * Every event is stored as one fixed-size record: the event's code, a small argument and an int value.
+ * The effect events are enough to rebuild the game; the rest say which action caused them, or that an
+ * action came to nothing, so that the {@link NewsRenderer} can tell the player what happened.
+ */
+
+public enum GameEvent {
+    // a new game; arg is the length of the hunter's name, which follows in NAME events
+    GAME_STARTED(1),
+    // up to four bytes of the hunter's name; arg is how many of them are used
+    NAME(2),
+    // arg is the index of the mode in TreasureHunter.MODES
+    MODE_CHOSEN(3),
+    // the hunter became a samurai
+    SAMURAI(4),
+    // value is the change in gold
+    GOLD_CHANGED(5),
+    // arg is the Item ordinal
+    ITEM_ADDED(6),
+    ITEM_REMOVED(7),
+    // value is the whole kit mask, as set by test mode
+    KIT_SET(8),
+    // arg is the Treasure ordinal
+    TREASURE_FOUND(9),
+    // arg packs the terrain index, the treasure ordinal (shifted 4), the tough flag (shifted 6)
+    // and whether the town was already dug up (shifted 7) or searched (shifted 8);
+    // value is how many other hunters are in the town
+    TOWN_ENTERED(10),
+    // arg is 0 for buying and 1 for selling
+    SHOP_ENTERED(11),
+    // arg is the Item ordinal, value is the price
+    ITEM_BOUGHT(12),
+    ITEM_SOLD(13),
+    // arg is the Item ordinal used to cross, value is 1 if it broke
+    TOWN_LEFT(14),
+    // arg is one of the TROUBLE_ outcomes, value is the gold won or lost
+    TROUBLE(15),
+    // arg is one of the DIG_ outcomes, value is the gold dug up
+    DUG(16),
+    // arg is the Treasure ordinal found in the town
+    SEARCHED(17),
+    // the hunter couldn't leave town; arg is the Item ordinal they needed
+    STUCK(18),
+    // the hunter searched a town that had already been searched
+    ALREADY_SEARCHED(19),
+    // arg is GAME_WON or GAME_LOST, value is the gold held at the end
+    GAME_OVER(20);
+
+    // outcomes of looking for trouble
+    public static final int TROUBLE_NONE = 0;
+    public static final int TROUBLE_WON = 1;
+    public static final int TROUBLE_LOST = 2;
+    public static final int TROUBLE_SWORD = 3;
+
+    // outcomes of digging for gold
+    public static final int DIG_ALREADY_DUG = 0;
+    public static final int DIG_NO_SHOVEL = 1;
+    public static final int DIG_GOLD = 2;
+    public static final int DIG_DIRT = 3;
+    // the gold was there, but another hunter in a shared world dug it up first
+    public static final int DIG_BEATEN = 4;
+
+    // how a game ended
+    public static final int GAME_WON = 0;
+    public static final int GAME_LOST = 1;
+
+    // code 0 is never used, so a zeroed record marks the end of the journal
+    private static final GameEvent[] BY_CODE = new GameEvent[32];
+
+    static {
+        for (GameEvent event : values()) {
+            BY_CODE[event.code] = event;
+        }
+    }
+
+    // instance variables
+    private final byte code;
+
+    GameEvent(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    /**
+     * @param code The code read back from a journal.
+     * @return The event with that code, or null for an empty record or an unknown code.
+     */
+    public static GameEvent fromCode(int code) {
+        if (code <= 0 || code >= BY_CODE.length) {
+            return null;
+        }
+        return BY_CODE[code];
+    }
+}
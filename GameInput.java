@@ -0,0 +1,232 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameInput is where a game's answers come from: every line typed or piped in, in order.<p>
+ * One reader, on its own thread, reads the source into a queue of lines, and the game takes lines off the
+ * queue as it asks its questions. Nothing else reads the source, so lines typed ahead or piped in all at
+ * once wait on the queue for whichever prompt comes next and are never swallowed by a second buffer.
+ * The queue is bounded, so a fast pipe is held back instead of filling the heap, but no line is dropped.<p>
+ * A game takes lines from one thread; {@link #nextLine()} behaves like Scanner's, throwing
+ * {@link NoSuchElementException} once the input has ended, or once it has been idle longer than the timeout.
+ */
+
+public class GameInput {
+    // constants
+    private static final int QUEUE_SIZE = 4096;
+    // put on the queue after the last line, and only ever compared by identity
+    private static final String END = new String("end of input");
+
+    // the game's standard input, shared so that only one reader ever reads System.in
+    private static GameInput stdin;
+
+    // instance variables
+    private final BlockingQueue<String> lines;
+    // a line taken off the queue by hasNextLine and not yet handed out
+    private String pending;
+    private boolean ended;
+    private long timeoutMillis;
+    // how long the game has spent waiting for lines, so that timings can leave the player's thinking out
+    private long waitNanos;
+    private volatile boolean closed;
+    private volatile Thread reader;
+    private volatile IOException failure;
+
+    private GameInput(BlockingQueue<String> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * @return The input of the game being played in this JVM's terminal.
+     */
+    public static synchronized GameInput stdin() {
+        if (stdin == null) {
+            stdin = new GameInput(new LinkedBlockingQueue<>(QUEUE_SIZE));
+            Thread thread = new Thread(() -> stdin.readAll(new InputStreamReader(System.in, StandardCharsets.UTF_8)), "input-reader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return stdin;
+    }
+
+    /**
+     * Reads an input on a thread of the given executor until it ends or the GameInput is closed.
+     *
+     * @param in Where the lines come from.
+     * @param executor Runs the reader.
+     * @return The new GameInput.
+     */
+    public static GameInput reading(InputStream in, Executor executor) {
+        GameInput input = new GameInput(new LinkedBlockingQueue<>(QUEUE_SIZE));
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        executor.execute(() -> input.readAll(reader));
+        return input;
+    }
+
+    /**
+     * Makes an input that has every line already, so no reader is needed.
+     *
+     * @param text The lines, separated by line breaks.
+     * @return The new GameInput.
+     */
+    public static GameInput of(String text) {
+        GameInput input = new GameInput(new LinkedBlockingQueue<>());
+        new BufferedReader(new StringReader(text)).lines().forEach(input.lines::add);
+        input.lines.add(END);
+        return input;
+    }
+
+    /**
+     * Sets how long {@link #nextLine()} waits for a line before giving up on the player.
+     *
+     * @param timeout How long to wait, or 0 to wait forever.
+     * @param unit The unit of the timeout.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        timeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Takes the next line, waiting for it if it hasn't come in yet.
+     *
+     * @return The line, without its line break.
+     * @throws NoSuchElementException if the input has ended, or no line came within the timeout.
+     */
+    public String nextLine() {
+        String line = timeoutMillis > 0 ? nextLine(timeoutMillis, TimeUnit.MILLISECONDS) : handOut();
+        if (line == null) {
+            throw new NoSuchElementException("No line within " + timeoutMillis + " ms");
+        }
+        return line;
+    }
+
+    /**
+     * Takes the next line, waiting for it no longer than given.
+     *
+     * @param timeout How long to wait.
+     * @param unit The unit of the timeout.
+     * @return The line, or null if none came in time.
+     * @throws NoSuchElementException if the input has ended.
+     */
+    public String nextLine(long timeout, TimeUnit unit) {
+        if (pending == null && !ended) {
+            long start = System.nanoTime();
+            try {
+                pending = lines.poll(timeout, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NoSuchElementException("Interrupted while waiting for a line");
+            } finally {
+                waitNanos += System.nanoTime() - start;
+            }
+            if (pending == null) {
+                return null;
+            }
+        }
+        return handOut();
+    }
+
+    /**
+     * Waits until there is another line or the input ends.
+     *
+     * @return true if there is another line.
+     */
+    public boolean hasNextLine() {
+        if (pending == null && !ended) {
+            long start = System.nanoTime();
+            try {
+                pending = lines.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                waitNanos += System.nanoTime() - start;
+            }
+        }
+        if (pending == END) {
+            pending = null;
+            ended = true;
+        }
+        return !ended;
+    }
+
+    /**
+     * Stops the reader, which may be waiting for room on the queue, and drops any lines that weren't taken.
+     */
+    public void close() {
+        closed = true;
+        lines.clear();
+        Thread thread = reader;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Tells how long the game has waited for lines in all, so that a timing can take out the time spent
+     * waiting for the player: {@code start + (getWaitNanos() - waitedBefore)} is when the timing would
+     * have started had the lines been there already.
+     *
+     * @return The nanoseconds spent waiting in {@link #nextLine()} and {@link #hasNextLine()} since the input was made.
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * @return The error that stopped the reader, or null if the input ended normally or hasn't ended.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Hands out the pending line, waiting for one if there isn't one.
+     */
+    private String handOut() {
+        if (!hasNextLine()) {
+            throw new NoSuchElementException("No line found");
+        }
+        String line = pending;
+        pending = null;
+        return line;
+    }
+
+    /**
+     * Runs on the reader's thread, putting each line on the queue as soon as it is read.
+     */
+    private void readAll(Reader source) {
+        reader = Thread.currentThread();
+        try (BufferedReader in = new BufferedReader(source)) {
+            String line;
+            while (!closed && (line = in.readLine()) != null) {
+                lines.put(line);
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                failure = e;
+            }
+        } catch (InterruptedException e) {
+            // closed while waiting for room on the queue
+        } finally {
+            try {
+                if (!closed) {
+                    lines.put(END);
+                }
+            } catch (InterruptedException e) {
+                // closed while waiting for room on the queue
+            }
+            reader = null;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The GameJournal records every state-changing action of a game to an append-only log.<p>
+ * The log is a directory of fixed-size segment files. The current segment is memory-mapped, so
+ * recording an event is a plain memory write with no system call; when a segment fills up the
+ * journal moves on to a new one. Records are {@link #RECORD_SIZE} bytes: the event code, one
+ * unused byte, a short argument and an int value. {@link JournalReplayer} reads them back.
+ */
+
+public class GameJournal implements AutoCloseable {
+    // constants
+    public static final int RECORD_SIZE = 8;
+    private static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // instance variables
+    private Path directory;
+    private long segmentSize;
+    private int segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Opens a journal in the given directory with 64 MB segments.
+     *
+     * @param directory Where the segment files go; it is created if needed.
+     * @throws IOException if the first segment can't be created.
+     */
+    public GameJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a journal in the given directory. Events are appended after any segments already there.
+     *
+     * @param directory Where the segment files go; it is created if needed.
+     * @param segmentSize The size of each segment file in bytes.
+     * @throws IOException if the first segment can't be created.
+     */
+    public GameJournal(Path directory, long segmentSize) throws IOException {
+        if (segmentSize < RECORD_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between " + RECORD_SIZE + " bytes and 2 GB: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        Files.createDirectories(directory);
+        segment = segments(directory).size();
+        openSegment();
+    }
+
+    /**
+     * Appends one event.
+     *
+     * @param event The kind of event.
+     * @param arg The event's small argument; only the low 16 bits are kept.
+     * @param value The event's value.
+     */
+    public void record(GameEvent event, int arg, int value) {
+        if (!buffer.hasRemaining()) {
+            try {
+                nextSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        buffer.put(event.code()).put((byte) 0).putShort((short) arg).putInt(value);
+    }
+
+    /**
+     * Records the start of a game, followed by the hunter's name four bytes at a time.
+     *
+     * @param hunterName The hunter's name.
+     */
+    public void recordGameStarted(String hunterName) {
+        recordGameStarted(hunterName, this::record);
+    }
+
+    /**
+     * Sends the events that start a game, and carry the hunter's name, to any handler.
+     *
+     * @param hunterName The hunter's name.
+     * @param to Where the events go, such as {@link EventBus#publish}.
+     */
+    static void recordGameStarted(String hunterName, EventBus.Handler to) {
+        byte[] name = hunterName.getBytes(StandardCharsets.UTF_8);
+        to.onEvent(GameEvent.GAME_STARTED, name.length, 0);
+        for (int i = 0; i < name.length; i += 4) {
+            int packed = 0;
+            int count = Math.min(4, name.length - i);
+            for (int j = 0; j < count; j++) {
+                packed |= (name[i + j] & 0xff) << (8 * j);
+            }
+            to.onEvent(GameEvent.NAME, count, packed);
+        }
+    }
+
+    /**
+     * Sends the events that start a game and then build its hunter up from nothing to their current state,
+     * so that a game picked up from a save can be replayed without the events that came before the save.
+     *
+     * @param hunter The hunter as they are now.
+     * @param modeIndex The index of the game's mode in {@link TreasureHunter#MODES}.
+     * @param to Where the events go, such as {@link EventBus#publish}.
+     */
+    static void recordLoadedGame(Hunter hunter, int modeIndex, EventBus.Handler to) {
+        recordGameStarted(hunter.getHunterName(), to);
+        to.onEvent(GameEvent.MODE_CHOSEN, modeIndex, 0);
+        if (hunter.isSamurai()) {
+            to.onEvent(GameEvent.SAMURAI, 0, 0);
+        }
+        to.onEvent(GameEvent.GOLD_CHANGED, 0, hunter.getGold());
+        to.onEvent(GameEvent.KIT_SET, 0, hunter.getKitMask());
+        for (Treasure treasure : Treasure.values()) {
+            if ((hunter.getTreasureMask() & treasure.bit()) != 0) {
+                to.onEvent(GameEvent.TREASURE_FOUND, treasure.ordinal(), 0);
+            }
+        }
+    }
+
+    /**
+     * Writes the mapped segment back to disk and closes it.
+     */
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Lists the segment files of a journal in the order they were written.
+     *
+     * @param directory The journal's directory.
+     * @return The segment files, oldest first.
+     * @throws IOException if the directory can't be read.
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private void nextSegment() throws IOException {
+        buffer.force();
+        channel.close();
+        segment++;
+        openSegment();
+    }
+
+    private void openSegment() throws IOException {
+        Path file = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+}
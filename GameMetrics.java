@@ -0,0 +1,302 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The GameMetrics class counts what happens in every game played in this JVM and times how long it takes.<p>
+ * There is one latency histogram per menu action, one for shop visits and one for render passes,
+ * and a counter for each kind of town event. Everything is a {@link LongAdder} or a {@link LatencyHistogram},
+ * so recording is lock-free and cheap enough to always leave on, even with thousands of games at once.<p>
+ * The numbers can be published as MBeans under the "treasurehunter" domain and printed when the JVM exits.
+ */
+
+public class GameMetrics implements GameMetricsMXBean {
+    // constants
+    static final String[] ACTIONS = {"buy", "sell", "move", "look", "dig", "hunt", "exit", "plan", "invalid"};
+    private static final int INVALID = ACTIONS.length - 1;
+
+    // one set of metrics is shared by every game
+    public static final GameMetrics INSTANCE = new GameMetrics();
+
+    // instance variables
+    private final LatencyHistogram[] actionLatency;
+    private final LatencyHistogram shopLatency;
+    private final LatencyHistogram renderLatency;
+    private final LongAdder turns;
+    private final LongAdder shopVisits;
+    private final LongAdder townsEntered;
+    private final LongAdder brawls;
+    private final LongAdder brawlsWon;
+    private final LongAdder brawlsLost;
+    private final LongAdder swordWins;
+    private final LongAdder itemsBroken;
+    // digs that turned the ground over, and those of them that found gold
+    private final LongAdder digs;
+    private final LongAdder digsWithGold;
+    private final LongAdder goldDug;
+    private final LongAdder treasureSearches;
+    private boolean registered;
+
+    private GameMetrics() {
+        actionLatency = new LatencyHistogram[ACTIONS.length];
+        for (int i = 0; i < ACTIONS.length; i++) {
+            actionLatency[i] = new LatencyHistogram(ACTIONS[i]);
+        }
+        shopLatency = new LatencyHistogram("shop");
+        renderLatency = new LatencyHistogram("render");
+        turns = new LongAdder();
+        shopVisits = new LongAdder();
+        townsEntered = new LongAdder();
+        brawls = new LongAdder();
+        brawlsWon = new LongAdder();
+        brawlsLost = new LongAdder();
+        swordWins = new LongAdder();
+        itemsBroken = new LongAdder();
+        digs = new LongAdder();
+        digsWithGold = new LongAdder();
+        goldDug = new LongAdder();
+        treasureSearches = new LongAdder();
+    }
+
+    /**
+     * @param choice The choice typed at the menu.
+     * @return The index of its action in {@link #ACTIONS}.
+     */
+    static int actionIndex(String choice) {
+        if (choice.startsWith("m")) {
+            return 2;
+        }
+        switch (choice) {
+            case "b":
+                return 0;
+            case "s":
+                return 1;
+            case "l":
+                return 3;
+            case "d":
+                return 4;
+            case "h":
+                return 5;
+            case "x":
+                return 6;
+            case "p":
+                return 7;
+            default:
+                return INVALID;
+        }
+    }
+
+    /**
+     * Counts one menu turn.
+     *
+     * @param action The index of the action in {@link #ACTIONS}.
+     * @param startNanos The {@link System#nanoTime()} reading taken when the turn started.
+     */
+    public void recordAction(int action, long startNanos) {
+        turns.increment();
+        actionLatency[action].recordSince(startNanos);
+    }
+
+    /**
+     * Counts one visit to a shop, from walking in to walking out.
+     *
+     * @param startNanos The {@link System#nanoTime()} reading taken when the hunter walked in.
+     */
+    public void recordShopVisit(long startNanos) {
+        shopVisits.increment();
+        shopLatency.recordSince(startNanos);
+    }
+
+    /**
+     * Counts one render pass of a window.
+     *
+     * @param startNanos The {@link System#nanoTime()} reading taken when the pass started.
+     */
+    public void recordRender(long startNanos) {
+        renderLatency.recordSince(startNanos);
+    }
+
+    /**
+     * Counts a town event, using the same arguments the {@link GameJournal} records.
+     *
+     * @param event What happened.
+     * @param arg The event's argument.
+     * @param value The event's value.
+     */
+    public void countEvent(GameEvent event, int arg, int value) {
+        switch (event) {
+            case TOWN_ENTERED -> townsEntered.increment();
+            case TOWN_LEFT -> {
+                if (value != 0) {
+                    itemsBroken.increment();
+                }
+            }
+            case TROUBLE -> {
+                if (arg == GameEvent.TROUBLE_WON) {
+                    brawls.increment();
+                    brawlsWon.increment();
+                } else if (arg == GameEvent.TROUBLE_LOST) {
+                    brawls.increment();
+                    brawlsLost.increment();
+                } else if (arg == GameEvent.TROUBLE_SWORD) {
+                    brawls.increment();
+                    swordWins.increment();
+                }
+            }
+            case DUG -> {
+                // digging where the gold is gone, without a shovel or just after another hunter isn't a dig
+                if (arg == GameEvent.DIG_GOLD) {
+                    digs.increment();
+                    digsWithGold.increment();
+                    goldDug.add(value);
+                } else if (arg == GameEvent.DIG_DIRT) {
+                    digs.increment();
+                }
+            }
+            case SEARCHED -> treasureSearches.increment();
+            default -> { }
+        }
+    }
+
+    public LatencyHistogram getActionLatency(String action) {
+        for (int i = 0; i < ACTIONS.length; i++) {
+            if (ACTIONS[i].equals(action)) {
+                return actionLatency[i];
+            }
+        }
+        return null;
+    }
+
+    public LatencyHistogram getShopLatency() {
+        return shopLatency;
+    }
+
+    public LatencyHistogram getRenderLatency() {
+        return renderLatency;
+    }
+
+    public long getTurns() {
+        return turns.sum();
+    }
+
+    public long getShopVisits() {
+        return shopVisits.sum();
+    }
+
+    public long getTownsEntered() {
+        return townsEntered.sum();
+    }
+
+    public long getBrawls() {
+        return brawls.sum();
+    }
+
+    public long getBrawlsWon() {
+        return brawlsWon.sum();
+    }
+
+    public long getBrawlsLost() {
+        return brawlsLost.sum();
+    }
+
+    public long getSwordWins() {
+        return swordWins.sum();
+    }
+
+    public long getItemsBroken() {
+        return itemsBroken.sum();
+    }
+
+    public long getDigs() {
+        return digs.sum();
+    }
+
+    public long getDigsWithGold() {
+        return digsWithGold.sum();
+    }
+
+    public long getGoldDug() {
+        return goldDug.sum();
+    }
+
+    public long getTreasureSearches() {
+        return treasureSearches.sum();
+    }
+
+    /**
+     * Publishes the counters and every histogram on the platform MBean server.
+     * Calling it again does nothing.
+     */
+    public synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName("treasurehunter:type=Counters"));
+            for (LatencyHistogram histogram : actionLatency) {
+                register(server, "Action", histogram);
+            }
+            register(server, "Shop", shopLatency);
+            register(server, "Render", renderLatency);
+            registered = true;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not publish the game metrics", e);
+        }
+    }
+
+    /**
+     * Publishes everything on a background thread, so that starting the platform MBean server
+     * doesn't hold up the game's first screen.
+     */
+    public void registerInBackground() {
+        Thread thread = new Thread(this::register, "metrics-register");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void register(MBeanServer server, String type, LatencyHistogram histogram) throws JMException {
+        server.registerMBean(histogram, new ObjectName("treasurehunter:type=" + type + ",name=" + histogram.getName()));
+    }
+
+    /**
+     * Prints every counter and histogram.
+     *
+     * @param out Where to print them.
+     */
+    public void dump(Writer out) {
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("turns=" + getTurns() + " shopVisits=" + getShopVisits() + " townsEntered=" + getTownsEntered());
+        writer.println("brawls=" + getBrawls() + " won=" + getBrawlsWon() + " lost=" + getBrawlsLost()
+                + " swordWins=" + getSwordWins() + " itemsBroken=" + getItemsBroken());
+        writer.println("digs=" + getDigs() + " withGold=" + getDigsWithGold() + " goldDug=" + getGoldDug() + " treasureSearches=" + getTreasureSearches());
+        for (LatencyHistogram histogram : actionLatency) {
+            writer.println(histogram);
+        }
+        writer.println(shopLatency);
+        writer.println(renderLatency);
+        writer.flush();
+    }
+
+    /**
+     * Prints everything to a file when the JVM shuts down.
+     *
+     * @param file The file to print to; it is replaced if it already exists.
+     */
+    public void dumpOnExit(Path file) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try (Writer out = Files.newBufferedWriter(file)) {
+                dump(out);
+            } catch (IOException e) {
+                System.err.println("Could not write the metrics to " + file + ": " + e.getMessage());
+            }
+        }, "metrics-dump"));
+    }
+}
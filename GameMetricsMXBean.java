@@ -0,0 +1,29 @@
+/**
+ * The GameMetricsMXBean is what JMX clients see of the {@link GameMetrics} counters.
+ */
+
+public interface GameMetricsMXBean {
+    long getTurns();
+
+    long getShopVisits();
+
+    long getTownsEntered();
+
+    long getBrawls();
+
+    long getBrawlsWon();
+
+    long getBrawlsLost();
+
+    long getSwordWins();
+
+    long getItemsBroken();
+
+    long getDigs();
+
+    long getDigsWithGold();
+
+    long getGoldDug();
+
+    long getTreasureSearches();
+}
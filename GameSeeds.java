@@ -0,0 +1,24 @@
+/**
+ * The GameSeeds class hands out the seed of every game in a run.<p>
+ * The seed of a game only depends on the run's seed and the game's number, so any single game
+ * can be replayed later no matter which thread played it first.
+ */
+
+public class GameSeeds {
+    private GameSeeds() { }
+
+    /**
+     * Works out the seed of one game of a run.
+     *
+     * @param runSeed The seed of the whole run.
+     * @param game The number of the game within the run.
+     * @return The seed to give that game's random source.
+     */
+    public static long forGame(long runSeed, long game) {
+        // the finalizer from SplittableRandom, so neighbouring games get unrelated seeds
+        long z = runSeed + (game + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,221 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameServer hosts many hunters in one JVM.<p>
+ * Every connection to the local port gets its own game, with its own input, window and random source,
+ * played as ANSI text on its own thread. A session holds two threads for as long as it is open, one playing
+ * the game and one reading the player's input, even while the player is idle. They are virtual threads when
+ * the JVM has them (Java 21 and later), and platform threads with small stacks otherwise, which is what
+ * the number of sessions at once is capped for: {@value #DEFAULT_MAX_SESSIONS} unless --max-sessions says
+ * otherwise. Players who connect while the server is full are turned away.<p>
+ * Usage: java GameServer [port] [--max-sessions n] [--metrics file] [--rules file] [--profiles file]
+ * [--profiles-capacity profiles] [--shared] to listen on the loopback address, or java GameServer --stdio to play a single session over stdin and stdout. The
+ * server's metrics are published over JMX, and written to the metrics file when it shuts down if one is given. Every
+ * finished game is added to its hunter's profile in the profiles file if one is given, which is made with room for the
+ * given number of profiles if it doesn't exist yet. With --shared, every session plays in one {@link SharedWorld}.
+ */
+
+public class GameServer {
+    // constants
+    private static final int DEFAULT_PORT = 7777;
+    // two platform threads each, which a default Linux process limit and a small heap can hold
+    static final int DEFAULT_MAX_SESSIONS = 1000;
+    // stack size of the platform threads sessions run on; the game never recurses deeply
+    private static final long THREAD_STACK_SIZE = 256 * 1024;
+    private static final int BACKLOG = 1024;
+    private static final int WRITE_BUFFER = 1024;
+    // a player who types nothing for this long is disconnected
+    private static final long IDLE_MINUTES = 30;
+    // runs the reader of every session's input
+    private static final ExecutorService READERS = newSessionExecutor();
+
+    // instance variables
+    private Semaphore openSlots;
+    private SplittableRandom seeds;
+    private ProfileStore profiles;
+    private SharedWorld sharedWorld;
+
+    public GameServer() {
+        this(DEFAULT_MAX_SESSIONS);
+    }
+
+    /**
+     * @param maxSessions How many sessions can be open at once.
+     */
+    public GameServer(int maxSessions) {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("The server needs room for at least one session: " + maxSessions);
+        }
+        openSlots = new Semaphore(maxSessions);
+        seeds = new SplittableRandom();
+    }
+
+    /**
+     * Keeps every session's hunter profile in the store from now on.
+     *
+     * @param profiles The store shared by every session.
+     */
+    public void setProfiles(ProfileStore profiles) {
+        this.profiles = profiles;
+    }
+
+    /**
+     * Puts every session from now on in the same world, racing each other for its gold and treasure.
+     *
+     * @param sharedWorld The world every session shares.
+     */
+    public void setSharedWorld(SharedWorld sharedWorld) {
+        this.sharedWorld = sharedWorld;
+    }
+
+    /**
+     * Accepts connections until the process is stopped.
+     *
+     * @param port The port to listen on.
+     * @throws IOException if the port can't be opened.
+     */
+    public void serve(int port) throws IOException {
+        ExecutorService sessions = newSessionExecutor();
+        try (ServerSocket server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress())) {
+            System.out.println("Treasure Hunter server listening on " + server.getLocalSocketAddress());
+            while (true) {
+                Socket socket = server.accept();
+                if (!openSlots.tryAcquire()) {
+                    // full up: turn the player away rather than let the heap grow without bound
+                    try (Socket rejected = socket) {
+                        rejected.getOutputStream().write("The server is full, try again later.\n".getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException ignored) { }
+                    continue;
+                }
+                long seed = seeds.nextLong();
+                sessions.execute(() -> {
+                    try (Socket client = socket) {
+                        playSession(client.getInputStream(), client.getOutputStream(), seed, profiles, sharedWorld);
+                    } catch (IOException ignored) {
+                        // the player went away; there is nothing left to clean up
+                    } finally {
+                        openSlots.release();
+                    }
+                });
+            }
+        } finally {
+            sessions.shutdown();
+        }
+    }
+
+    /**
+     * Plays one full game over a pair of streams.
+     *
+     * @param in Where the player's answers come from.
+     * @param out Where the game's text goes.
+     * @param seed The seed of the game.
+     */
+    public static void playSession(InputStream in, OutputStream out, long seed) {
+        playSession(in, out, seed, null, null);
+    }
+
+    /**
+     * Plays one full game over a pair of streams, keeping the hunter's profile in a store.
+     *
+     * @param in Where the player's answers come from.
+     * @param out Where the game's text goes.
+     * @param seed The seed of the game.
+     * @param profiles The profile store, or null to keep no profile.
+     * @param sharedWorld The world shared with other sessions, or null for a world of the game's own.
+     */
+    public static void playSession(InputStream in, OutputStream out, long seed, ProfileStore profiles, SharedWorld sharedWorld) {
+        GameInput input = in == System.in ? GameInput.stdin() : GameInput.reading(in, READERS);
+        input.setTimeout(IDLE_MINUTES, TimeUnit.MINUTES);
+        PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER));
+        TreasureHunter game = new TreasureHunter(seed, new TerminalWindow(writer), input);
+        game.setProfiles(profiles);
+        game.setSharedWorld(sharedWorld);
+        try {
+            game.play();
+        } catch (NoSuchElementException disconnected) {
+            // the input ended, or the player went idle, before the game did
+        } finally {
+            input.close();
+        }
+        writer.println();
+        writer.flush();
+    }
+
+    /**
+     * Uses one virtual thread per session when the JVM supports them (Java 21 and later),
+     * and falls back to a pool of platform threads with small stacks otherwise.
+     *
+     * @return The executor sessions are run on.
+     */
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(null, task, "session", THREAD_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--stdio")) {
+            playSession(System.in, System.out, new SplittableRandom().nextLong());
+            return;
+        }
+        int port = DEFAULT_PORT;
+        int maxSessions = DEFAULT_MAX_SESSIONS;
+        boolean shared = false;
+        Path profilesFile = null;
+        long profilesCapacity = ProfileStore.DEFAULT_CAPACITY;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--metrics") && i + 1 < args.length) {
+                GameMetrics.INSTANCE.dumpOnExit(Path.of(args[++i]));
+            } else if (args[i].equals("--rules") && i + 1 < args.length) {
+                RulesetWatcher.start(Path.of(args[++i]));
+            } else if (args[i].equals("--shared")) {
+                shared = true;
+            } else if (args[i].equals("--max-sessions") && i + 1 < args.length) {
+                maxSessions = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--profiles") && i + 1 < args.length) {
+                profilesFile = Path.of(args[++i]);
+            } else if (args[i].equals("--profiles-capacity") && i + 1 < args.length) {
+                profilesCapacity = ProfileStore.capacityFor(Long.parseLong(args[++i]));
+            } else {
+                port = Integer.parseInt(args[i]);
+            }
+        }
+        GameServer server = new GameServer(maxSessions);
+        if (shared) {
+            server.setSharedWorld(new SharedWorld(new SplittableRandom().nextLong()));
+        }
+        if (profilesFile != null) {
+            ProfileStore profiles = new ProfileStore(profilesFile, profilesCapacity);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    profiles.close();
+                } catch (IOException ignored) { }
+            }));
+            server.setProfiles(profiles);
+        }
+        GameMetrics.INSTANCE.register();
+        server.serve(port);
+    }
+}
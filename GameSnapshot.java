@@ -0,0 +1,246 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The GameSnapshot class is a frozen copy of everything needed to pick a game back up:
+ * the hunter, the town they are in and the mode.<p>
+ * Taking a snapshot only copies a handful of primitives, so it is cheap to do every turn, and since a
+ * snapshot never changes it can be written out on another thread while the game carries on.
+ * The binary format starts with a magic number and a version, then the fields in a fixed order.
+ * Version 2 adds the world: its seed, the hunter's coordinates and the towns that were dug up or
+ * searched. Version 1 saves still load, into a new world.
+ */
+
+public class GameSnapshot {
+    // constants
+    private static final int MAGIC = 0x54485356; // "THSV"
+    private static final int VERSION = 2;
+
+    // instance variables
+    private final String hunterName;
+    private final int modeIndex;
+    private final int gold;
+    private final int kitMask;
+    private final int treasureMask;
+    private final boolean samurai;
+    private final int terrainIndex;
+    private final int townTreasure;
+    private final boolean toughTown;
+    private final boolean dugBefore;
+    private final boolean treasureSearched;
+    private final boolean hasWorld;
+    private final long worldSeed;
+    private final int x;
+    private final int y;
+    private final Map<Long, Byte> deltas;
+
+    private GameSnapshot(String hunterName, int modeIndex, int gold, int kitMask, int treasureMask, boolean samurai,
+                         int terrainIndex, int townTreasure, boolean toughTown, boolean dugBefore, boolean treasureSearched,
+                         boolean hasWorld, long worldSeed, int x, int y, Map<Long, Byte> deltas) {
+        this.hunterName = hunterName;
+        this.modeIndex = modeIndex;
+        this.gold = gold;
+        this.kitMask = kitMask;
+        this.treasureMask = treasureMask;
+        this.samurai = samurai;
+        this.terrainIndex = terrainIndex;
+        this.townTreasure = townTreasure;
+        this.toughTown = toughTown;
+        this.dugBefore = dugBefore;
+        this.treasureSearched = treasureSearched;
+        this.hasWorld = hasWorld;
+        this.worldSeed = worldSeed;
+        this.x = x;
+        this.y = y;
+        this.deltas = deltas;
+    }
+
+    /**
+     * Copies the current state of a game.
+     *
+     * @param hunter The Hunter.
+     * @param town The Town the Hunter is in.
+     * @param mode The mode of the game.
+     * @param world The world the Hunter travels through.
+     * @param x The Hunter's east-west coordinate.
+     * @param y The Hunter's north-south coordinate.
+     * @return The snapshot.
+     */
+    public static GameSnapshot of(Hunter hunter, Town town, String mode, World world, int x, int y) {
+        return new GameSnapshot(hunter.getHunterName(), TreasureHunter.modeIndex(mode), hunter.getGold(),
+                hunter.getKitMask(), hunter.getTreasureMask(), hunter.isSamurai(), town.getTerrainIndex(),
+                town.getTreasure().ordinal(), town.isToughTown(), town.hasDugBefore(), town.isTreasureSearched(),
+                true, world.getWorldSeed(), x, y, world.getDeltas());
+    }
+
+    public String getMode() {
+        return TreasureHunter.MODES[modeIndex];
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Builds the saved world, with its dug up and searched towns.
+     *
+     * @param rules The rules the world's towns are built with.
+     * @param window Where the towns and their shops write their text.
+     * @param random The random source of the game from here on.
+     * @return The restored World.
+     */
+    public World toWorld(Ruleset rules, GameWindow window, SplittableRandom random) {
+        long seed = hasWorld ? worldSeed : random.nextLong();
+        World world = new World(seed, rules, getMode(), window, random, World.DEFAULT_CACHE_SIZE);
+        world.restoreDeltas(deltas);
+        return world;
+    }
+
+    /**
+     * Builds a new Hunter in the saved state.
+     *
+     * @return The restored Hunter.
+     */
+    public Hunter toHunter() {
+        Hunter hunter = new Hunter(hunterName, 0);
+        if (samurai) {
+            hunter.setSamurai();
+        }
+        hunter.restoreState(gold, kitMask, treasureMask);
+        return hunter;
+    }
+
+    /**
+     * Finds the saved Town in the restored world and puts the Hunter in it.
+     *
+     * @param hunter The restored Hunter.
+     * @param world The restored World.
+     * @return The restored Town.
+     * @throws IllegalArgumentException if the save has no world and its town's terrain isn't in the world's rules.
+     */
+    public Town toTown(Hunter hunter, World world) {
+        Town town;
+        if (hasWorld) {
+            town = world.townAt(x, y);
+        } else {
+            // older saves have no world, so the saved town becomes the middle of a new one
+            if (terrainIndex >= world.getRules().getTerrainCount()) {
+                throw new IllegalArgumentException("The saved town's terrain " + terrainIndex + " isn't in the rules, which have "
+                        + world.getRules().getTerrainCount() + " terrains");
+            }
+            town = world.place(x, y, Treasure.values()[townTreasure], terrainIndex, toughTown);
+        }
+        town.restoreState(dugBefore, treasureSearched);
+        town.hunterArrives(hunter);
+        return town;
+    }
+
+    /**
+     * Writes the snapshot in the binary save format.
+     *
+     * @param out Where to write it.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(hunterName);
+        out.writeByte(modeIndex);
+        out.writeInt(gold);
+        out.writeShort(kitMask);
+        out.writeByte(treasureMask);
+        out.writeByte(terrainIndex);
+        out.writeByte(townTreasure);
+        // the four flags share one byte
+        out.writeByte((samurai ? 1 : 0) | (toughTown ? 2 : 0) | (dugBefore ? 4 : 0) | (treasureSearched ? 8 : 0));
+        out.writeLong(worldSeed);
+        out.writeInt(x);
+        out.writeInt(y);
+        out.writeInt(deltas.size());
+        for (Map.Entry<Long, Byte> delta : deltas.entrySet()) {
+            out.writeLong(delta.getKey());
+            out.writeByte(delta.getValue());
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in Where to read it from.
+     * @return The snapshot.
+     * @throws IOException if reading fails or the data isn't a save of a version this game understands.
+     */
+    public static GameSnapshot readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a Treasure Hunter save");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported save version " + version);
+        }
+        String hunterName = in.readUTF();
+        int modeIndex = in.readUnsignedByte();
+        int gold = in.readInt();
+        int kitMask = in.readUnsignedShort();
+        int treasureMask = in.readUnsignedByte();
+        int terrainIndex = in.readUnsignedByte();
+        int townTreasure = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        if (modeIndex >= TreasureHunter.MODES.length || terrainIndex >= Ruleset.MAX_TERRAINS || townTreasure >= Treasure.values().length) {
+            throw new IOException("Corrupt save");
+        }
+
+        boolean hasWorld = version >= 2;
+        long worldSeed = 0;
+        int x = 0;
+        int y = 0;
+        Map<Long, Byte> deltas = new HashMap<>();
+        if (hasWorld) {
+            worldSeed = in.readLong();
+            x = in.readInt();
+            y = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                deltas.put(in.readLong(), in.readByte());
+            }
+        }
+        return new GameSnapshot(hunterName, modeIndex, gold, kitMask, treasureMask, (flags & 1) != 0,
+                terrainIndex, townTreasure, (flags & 2) != 0, (flags & 4) != 0, (flags & 8) != 0,
+                hasWorld, worldSeed, x, y, deltas);
+    }
+
+    /**
+     * @return The snapshot in the binary save format.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + hunterName.length());
+        try {
+            writeTo(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // a byte array can't fail to be written to
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bytes A snapshot in the binary save format.
+     * @return The snapshot.
+     * @throws IOException if the bytes aren't a valid save.
+     */
+    public static GameSnapshot fromBytes(byte[] bytes) throws IOException {
+        return readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * The GameView draws the main game screen as four regions: the latest news, the hunter's status,
+ * the town and the menu.<p>
+ * Each region remembers the version of the state it was drawn from, so its text is only rebuilt
+ * when that state changes, and the window is told which regions changed so it can leave the rest
+ * alone. The menu never changes, so it is built once for every game.
+ */
+
+public class GameView {
+    // constants
+    private static final int NEWS = 0;
+    private static final int STATUS = 1;
+    private static final int TOWN = 2;
+    private static final int MENU = 3;
+    private static final String MENU_TEXT = "\n(B)uy something at the shop."
+            + "\n(S)ell something at the shop."
+            + "\n(M)ove on to a different town."
+            + "\n(L)ook for trouble!"
+            + "\n(D)ig for gold"
+            + "\n(H)unt for treasure"
+            + "\n(P)lan a route to an unsearched town"
+            + "\nGive up the hunt and e(X)it."
+            + "\n\nWhat's your next move? ";
+    private static final TextColor[] COLORS = {TextColor.RED, TextColor.BLUE, TextColor.BLUE, TextColor.BLUE};
+
+    // instance variables
+    private String[] texts;
+    private boolean[] changed;
+    private Hunter hunter;
+    private int hunterVersion;
+    private Town town;
+
+    public GameView() {
+        texts = new String[] {"", "", "", MENU_TEXT};
+        changed = new boolean[texts.length];
+    }
+
+    /**
+     * Brings the screen up to date and flushes the window.
+     *
+     * @param window The window to draw on.
+     * @param news The town's latest news.
+     * @param hunter The hunter being played.
+     * @param town The town the hunter is in.
+     */
+    public void show(GameWindow window, String news, Hunter hunter, Town town) {
+        changed[NEWS] = !news.equals(texts[NEWS]);
+        texts[NEWS] = news;
+
+        changed[STATUS] = hunter != this.hunter || hunter.getVersion() != hunterVersion;
+        if (changed[STATUS]) {
+            this.hunter = hunter;
+            hunterVersion = hunter.getVersion();
+            texts[STATUS] = "\n***\n" + hunter;
+        }
+
+        // a town's terrain never changes, so the region only changes with the town
+        changed[TOWN] = town != this.town;
+        if (changed[TOWN]) {
+            this.town = town;
+            texts[TOWN] = "\n" + town;
+        }
+
+        changed[MENU] = false;
+        window.showRegions(texts, COLORS, changed);
+        window.flush();
+    }
+}
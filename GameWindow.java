@@ -0,0 +1,43 @@
+/**
+ * GameWindow Interface<br /><br />
+ * Anything the game can write its text to. The Swing {@link OutputWindow} is the normal one,
+ * while {@link HeadlessWindow} lets games run without any UI at all.
+ */
+
+public interface GameWindow {
+    /**
+     * Appends a fragment of text in the given color.
+     *
+     * @param text The text to add.
+     * @param color The color to show the text in.
+     */
+    void addTextToWindow(String text, TextColor color);
+
+    /**
+     * Removes all text from the window.
+     */
+    void clear();
+
+    /**
+     * Shows everything written since the last flush. Windows may hold text back until this is called,
+     * so it must be called before waiting for the player.
+     */
+    void flush();
+
+    /**
+     * Shows a screen made of regions stacked from the top of the window, in place of whatever was there.
+     * If the window still shows the regions from the last call, only the regions marked as changed have
+     * to be redrawn, and anything added below the regions since is removed. The default just clears the
+     * window and writes every region again.
+     *
+     * @param texts The text of each region, top to bottom.
+     * @param colors The color of each region.
+     * @param changed Which regions are different from the last call.
+     */
+    default void showRegions(String[] texts, TextColor[] colors, boolean[] changed) {
+        clear();
+        for (int i = 0; i < texts.length; i++) {
+            addTextToWindow(texts[i], colors[i]);
+        }
+    }
+}
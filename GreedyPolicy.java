@@ -0,0 +1,45 @@
+/**
+ * The GreedyPolicy is the default player used by the simulation.<p>
+ * It searches every town once, leaves as soon as it can cross the terrain,
+ * buys whatever it needs to cross and otherwise goes looking for trouble to earn gold.
+ */
+
+public class GreedyPolicy implements Policy {
+    public String chooseAction(Hunter hunter, Town town) {
+        if (!town.isTreasureSearched()) {
+            return "h";
+        }
+        if (hunter.isSamurai() && !hunter.hasItem(Item.SWORD)) {
+            return "b";
+        }
+        Terrain terrain = town.getTerrain();
+        if (terrain.canCrossTerrain(hunter)) {
+            return "m";
+        }
+        if (!hunter.hasRoomInKit()) {
+            return "s";
+        }
+        int cost = town.getShop().getCostOfItem(terrain.getItem());
+        if (hunter.hasItem(Item.SWORD) || hunter.getGold() >= cost) {
+            return "b";
+        }
+        return "l";
+    }
+
+    public String chooseItem(Hunter hunter, Town town, boolean isBuying) {
+        if (!isBuying) {
+            // anything but the item needed here, the first item sold frees up a slot
+            Item needed = town.getTerrain().getItem();
+            for (Item item : Item.values()) {
+                if (item != needed && hunter.hasItem(item)) {
+                    return item.getItemName();
+                }
+            }
+            return needed.getItemName();
+        }
+        if (hunter.isSamurai() && !hunter.hasItem(Item.SWORD)) {
+            return "sword";
+        }
+        return town.getTerrain().getNeededItem();
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * The HeadlessWindow discards everything written to it.
+ * It is used when games are played by the simulation instead of a person.
+ */
+
+public class HeadlessWindow implements GameWindow {
+    // one instance is enough since there is no state
+    public static final HeadlessWindow INSTANCE = new HeadlessWindow();
+
+    private HeadlessWindow() { }
+
+    public void addTextToWindow(String text, TextColor color) { }
+
+    public void clear() { }
+
+    public void flush() { }
+}
@@ -1,5 +1,3 @@
-import java.awt.*;
-
 /**
  * Hunter Class<br /><br />
  * This class represents the treasure hunter character (the player) in the Treasure Hunt game.
@@ -7,13 +5,29 @@ import java.awt.*;
  */
 
 public class Hunter {
+    // constants
+    static final int KIT_SIZE = 6;
+    static final int SAMURAI_KIT_SIZE = 8;
+    // the kit test mode hands out in every town
+    static final int TEST_KIT = Item.WATER.bit() | Item.ROPE.bit() | Item.MACHETE.bit() | Item.HORSE.bit() | Item.BOAT.bit() | Item.BOOTS.bit();
+
     //instance variables
     private String hunterName;
-    private String[] kit;
-    private String[] treasureFound;
+    private int kit;
+    private int kitCapacity;
+    private int treasureFound;
     private int gold;
-    public static boolean isSamurai;
-    private OutputWindow window;
+    private boolean samurai;
+    private boolean gameOver;
+    private EventBus events;
+    // goes up every time the gold, kit or treasures change
+    private int version;
+    // how the hunter's brawls went and how many items broke, for the simulation's statistics
+    private int brawlsWon;
+    private int brawlsLost;
+    private int itemsBroken;
+    // how many towns the hunter has arrived in, for the leaderboard
+    private int townsVisited;
 
     /**
      * The base constructor of a Hunter assigns the name to the hunter and an empty kit.
@@ -21,13 +35,14 @@ public class Hunter {
      * @param hunterName The hunter's name.
      * @param startingGold The gold the hunter starts with.
      */
-    public Hunter(String hunterName, int startingGold, OutputWindow window) {
+    public Hunter(String hunterName, int startingGold) {
         this.hunterName = hunterName;
-        kit = new String[6];
-        treasureFound = new String[4];
+        kit = 0;
+        kitCapacity = KIT_SIZE;
+        treasureFound = 0;
         gold = startingGold;
-        isSamurai = false;
-        this.window = window;
+        samurai = false;
+        gameOver = false;
     }
 
     //Accessors
@@ -35,22 +50,124 @@ public class Hunter {
         return hunterName;
     }
 
+    public int getGold() {
+        return gold;
+    }
+
+    public boolean isSamurai() {
+        return samurai;
+    }
+
+    /**
+     * @return The kit as a mask of {@link Item#bit()} values.
+     */
+    public int getKitMask() {
+        return kit;
+    }
+
+    /**
+     * @return The treasures found as a mask of {@link Treasure#bit()} values.
+     */
+    public int getTreasureMask() {
+        return treasureFound;
+    }
+
+    public EventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Publishes everything that changes this hunter from now on.
+     *
+     * @param events The game's event bus, or null to stop publishing.
+     */
+    public void setEvents(EventBus events) {
+        this.events = events;
+    }
+
+    /**
+     * @return A number that changes whenever anything shown by {@link #toString()} changes.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public int getBrawlsWon() {
+        return brawlsWon;
+    }
+
+    public int getBrawlsLost() {
+        return brawlsLost;
+    }
+
+    public int getItemsBroken() {
+        return itemsBroken;
+    }
+
+    public int getTownsVisited() {
+        return townsVisited;
+    }
+
+    /**
+     * Counts a brawl the hunter got into.
+     *
+     * @param won true if the hunter came away with the gold.
+     */
+    public void countBrawl(boolean won) {
+        if (won) {
+            brawlsWon++;
+        } else {
+            brawlsLost++;
+        }
+    }
+
+    /**
+     * Counts an item that broke while crossing terrain.
+     */
+    public void countBrokenItem() {
+        itemsBroken++;
+    }
+
+    /**
+     * Counts a town the hunter arrived in.
+     */
+    public void countTown() {
+        townsVisited++;
+    }
+
+    /**
+     * @return How many items the hunter can carry.
+     */
+    int getKitCapacity() {
+        return kitCapacity;
+    }
+
+    /**
+     * @return true once the hunter has either won or died from debt.
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * @return true if the hunter has found all three treasures.
+     */
+    public boolean hasWon() {
+        return (treasureFound & Treasure.WINNING_MASK) == Treasure.WINNING_MASK;
+    }
+
     /**
      * Updates the amount of gold the hunter has.
      *
      * @param modifier Amount to modify gold by.
      */
     public void changeGold(int modifier) {
+        record(GameEvent.GOLD_CHANGED, 0, modifier);
         gold += modifier;
-        if (gold < 0) {
-            String printMessage = "";
-            printMessage = Colors.RED;
-            printMessage += "That'll teach you to go lookin' fer trouble in MY town! Now pay up!";
-            printMessage += "\nYou lost the brawl and pay " + -modifier + " gold.";
-            System.out.println(printMessage);
-            printMessage += Colors.RESET;
-            TreasureHunter.setGameOver();
-            window.addTextToWindow("\nYou lost the brawl and died from a debt of " + -gold +  " gold", Color.red);
+        version++;
+        if (gold < 0 && !gameOver) {
+            gameOver = true;
+            record(GameEvent.GAME_OVER, GameEvent.GAME_LOST, gold);
         }
     }
 
@@ -62,12 +179,17 @@ public class Hunter {
      * @return true if the item is successfully bought.
      */
     public boolean buyItem(String item, int costOfItem) {
-        if ((costOfItem == 0 && !item.equals("sword")) || gold < costOfItem || hasItemInKit(item)) {
+        Item kitItem = Item.fromName(item);
+        if (kitItem == null || (costOfItem == 0 && kitItem != Item.SWORD) || gold < costOfItem
+                || hasItem(kitItem) || !hasRoomInKit()) {
             return false;
         }
 
+        record(GameEvent.ITEM_BOUGHT, kitItem.ordinal(), costOfItem);
+        record(GameEvent.GOLD_CHANGED, 0, -costOfItem);
         gold -= costOfItem;
-        addItem(item);
+        version++;
+        addItem(kitItem);
         return true;
     }
 
@@ -84,81 +206,134 @@ public class Hunter {
             return false;
         }
 
+        record(GameEvent.ITEM_SOLD, Item.fromName(item).ordinal(), buyBackPrice);
+        record(GameEvent.GOLD_CHANGED, 0, buyBackPrice);
         gold += buyBackPrice;
+        version++;
         removeItemFromKit(item);
         return true;
     }
 
     /**
-     * Removes an item from the kit by setting the index of the item to null.
+     * Removes an item from the kit.
      *
      * @param item The item to be removed.
      */
     public void removeItemFromKit(String item) {
-        int itmIdx = findItemInKit(item);
+        Item kitItem = Item.fromName(item);
+        if (kitItem != null) {
+            removeItem(kitItem);
+        }
+    }
 
-        // if item is found
-        if (itmIdx >= 0) {
-            kit[itmIdx] = null;
+    /**
+     * Removes an item from the kit by clearing its bit.
+     *
+     * @param item The item to be removed.
+     */
+    public void removeItem(Item item) {
+        if (hasItem(item)) {
+            record(GameEvent.ITEM_REMOVED, item.ordinal(), 0);
         }
+        kit &= ~item.bit();
+        version++;
     }
 
     /**
-     * Checks to make sure that the item is not already in the kit.
-     * If not, it assigns the item to an index in the kit with a null value ("empty" position).
+     * Checks to make sure that the item is not already in the kit and that the kit has room for it.
      *
      * @param item The item to be added to the kit.
      * @return true if the item is not in the kit and has been added.
      */
     public boolean addItem(String item) {
-        if (!hasItemInKit(item)) {
-            if (item.equals("sword")){
-                item = item;
-            }
-            int idx = emptyPositionInKit();
-            kit[idx] = item;
-            return true;
-        }
+        Item kitItem = Item.fromName(item);
+        return kitItem != null && addItem(kitItem);
+    }
 
-        return false;
+    /**
+     * Adds an item to the kit by setting its bit.
+     *
+     * @param item The item to be added to the kit.
+     * @return true if the item is not in the kit and has been added.
+     */
+    public boolean addItem(Item item) {
+        if (hasItem(item) || !hasRoomInKit()) {
+            return false;
+        }
+        record(GameEvent.ITEM_ADDED, item.ordinal(), 0);
+        kit |= item.bit();
+        version++;
+        return true;
     }
 
+    /**
+     * Adds a treasure the hunter found, and ends the game once all three treasures are found.
+     *
+     * @param treasure The name of the treasure; anything that isn't a treasure is ignored.
+     */
     public void addTreasure(String treasure) {
-        if (treasure.equals("gem")) {
-            treasureFound[0] = "gem";
-        } else if (treasure.equals("crown")) {
-            treasureFound[1] = "crown";
-        } else if (treasure.equals("trophy")) {
-            treasureFound[2] = "trophy";
+        Treasure found = Treasure.fromName(treasure);
+        if (found != null && found != Treasure.DUST) {
+            record(GameEvent.TREASURE_FOUND, found.ordinal(), 0);
+            treasureFound |= found.bit();
+            version++;
         }
-        if (!(treasureFound[0] == null || treasureFound[1] == null || treasureFound[2] == null)) {
-            window.addTextToWindow("Congratulations, you have found the last of the three treasures, you win!", Color.green);
-            TreasureHunter.setGameOver();
+        if (!gameOver && hasWon()) {
+            gameOver = true;
+            record(GameEvent.GAME_OVER, GameEvent.GAME_WON, gold);
         }
     }
 
     public void addAll(){
-        kit[0] = "water";
-        kit[1] = "rope";
-        kit[2] = "machete";
-        kit[3] = "horse";
-        kit[4] = "boat";
-        kit[5] = "boots";
+        kit = TEST_KIT;
+        version++;
+        record(GameEvent.KIT_SET, 0, kit);
+    }
+
+    /**
+     * Replaces the whole kit, for replays and saved games.
+     *
+     * @param kitMask The new kit as a mask of {@link Item#bit()} values.
+     */
+    void setKitMask(int kitMask) {
+        kit = kitMask;
+        version++;
+    }
+
+    /**
+     * Puts the hunter back in a saved state.
+     *
+     * @param gold The saved gold.
+     * @param kitMask The saved kit as a mask of {@link Item#bit()} values.
+     * @param treasureMask The saved treasures as a mask of {@link Treasure#bit()} values.
+     */
+    void restoreState(int gold, int kitMask, int treasureMask) {
+        this.gold = gold;
+        kit = kitMask;
+        treasureFound = treasureMask;
+        version++;
+        gameOver = gold < 0 || hasWon();
     }
 
     /**
-     * Checks if the kit Array has the specified item.
+     * Checks if the kit has the specified item.
      *
      * @param item The search item
      * @return true if the item is found.
      */
     public boolean hasItemInKit(String item) {
-        for (String tmpItem : kit) {
-            if (item.equals(tmpItem)) {
-                return true;
-            }
-        }
-        return false;
+        Item kitItem = Item.fromName(item);
+        return kitItem != null && hasItem(kitItem);
+    }
+
+    /**
+     * Checks if the kit has the specified item.
+     *
+     * @param item The search item
+     * @return true if the item is found.
+     */
+    public boolean hasItem(Item item) {
+        return (kit & item.bit()) != 0;
     }
 
      /**
@@ -168,29 +343,27 @@ public class Hunter {
      * @return The printable String representation of the inventory.
      */
     public String getInventory() {
-        String printableKit = "";
-        String space = " ";
-        for (String item : kit) {
-            if (item != null) {
-                if (item.equals("sword")){
-                    printableKit += "Sword" + space;
+        StringBuilder printableKit = new StringBuilder();
+        for (Item item : Item.values()) {
+            if (hasItem(item)) {
+                if (item == Item.SWORD) {
+                    printableKit.append("Sword ");
                 } else {
-                    printableKit += item + space;
+                    printableKit.append(item.getItemName()).append(' ');
                 }
             }
         }
-        return printableKit;
+        return printableKit.toString();
     }
 
     public String getTreasure() {
-        String printableKit = "";
-        String space = " ";
-        for (String item : treasureFound) {
-            if (item != null) {
-                printableKit += item + space;
+        StringBuilder printableTreasure = new StringBuilder();
+        for (Treasure treasure : Treasure.values()) {
+            if ((treasureFound & treasure.bit()) != 0) {
+                printableTreasure.append(treasure.getTreasureName()).append(' ');
             }
         }
-        return printableKit;
+        return printableTreasure.toString();
     }
 
     /**
@@ -198,11 +371,11 @@ public class Hunter {
      */
     public String toString() {
         String str = hunterName + " has " + gold + " gold";
-        if (!kitIsEmpty()) {
+        if (kit != 0) {
             str += " and " + getInventory();
         }
         str += "\nTreasures Found: ";
-        if (treasureFound[0] != null){
+        if (treasureFound != 0){
             str += getTreasure();
         } else {
             str += "none";
@@ -211,72 +384,21 @@ public class Hunter {
     }
 
     /**
-     * Searches kit Array for the index of the specified value.
-     *
-     * @param item String to look for.
-     * @return The index of the item, or -1 if not found.
+     * @return true if there is at least one empty position left in the kit.
      */
-    private int findItemInKit(String item) {
-        for (int i = 0; i < kit.length; i++) {
-            String tmpItem = kit[i];
-
-            if (item.equals(tmpItem)) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
-    private int findTreasure(String treasure){
-        for (int i = 0; i < treasureFound.length; i++) {
-            String tmpItem = treasureFound[i];
-            if (treasure.equals(tmpItem)) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
-    private int emptyTreasure(){
-        for (int i = 0; i < treasureFound.length; i++) {
-            if (treasureFound[i] == null) {
-                return i;
-            }
-        }
-        return -1;
+    public boolean hasRoomInKit() {
+        return Integer.bitCount(kit) < kitCapacity;
     }
 
-    /**
-     * Check if the kit is empty - meaning all elements are null.
-     *
-     * @return true if kit is completely empty.
-     */
-    private boolean kitIsEmpty() {
-        for (String string : kit) {
-            if (string != null) {
-                return false;
-            }
-        }
-
-        return true;
+    public void setSamurai(){
+        record(GameEvent.SAMURAI, 0, 0);
+        samurai = true;
+        kitCapacity = SAMURAI_KIT_SIZE;
     }
 
-    /**
-     * Finds the first index where there is a null value.
-     *
-     * @return index of empty index, or -1 if not found.
-     */
-    private int emptyPositionInKit() {
-        for (int i = 0; i < kit.length; i++) {
-            if (kit[i] == null) {
-                return i;
-            }
+    private void record(GameEvent event, int arg, int value) {
+        if (events != null) {
+            events.publish(event, arg, value);
         }
-        return -1;
-    }
-
-    public void setSamurai(){
-        isSamurai = true;
-        kit = new String[8];
     }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+/**
+ * The Item enum lists everything that can go in a hunter's kit.<p>
+ * Each item owns one bit, so a whole kit fits in a single int.
+ */
+
+public enum Item {
+    WATER("water"),
+    ROPE("rope"),
+    MACHETE("machete"),
+    HORSE("horse"),
+    BOAT("boat"),
+    SHOVEL("shovel"),
+    BOOTS("boots"),
+    SWORD("sword");
+
+    // instance variables
+    private final String itemName;
+    private final int bit;
+
+    Item(String itemName) {
+        this.itemName = itemName;
+        this.bit = 1 << ordinal();
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    /**
+     * @return The bit this item takes up in a kit mask.
+     */
+    public int bit() {
+        return bit;
+    }
+
+    /**
+     * Looks up an item by the name players type in.
+     *
+     * @param name The lower case name of the item.
+     * @return The item, or null if there is no item with that name.
+     */
+    public static Item fromName(String name) {
+        switch (name) {
+            case "water": return WATER;
+            case "rope": return ROPE;
+            case "machete": return MACHETE;
+            case "horse": return HORSE;
+            case "boat": return BOAT;
+            case "shovel": return SHOVEL;
+            case "boots": return BOOTS;
+            case "sword": return SWORD;
+            default: return null;
+        }
+    }
+}
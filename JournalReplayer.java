@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * The JournalReplayer rebuilds the Hunter and the current Town from a {@link GameJournal}.<p>
+ * Segments are memory-mapped and read one record at a time straight out of the mapping, and only the
+ * effect events (gold, kit, treasures, towns and their flags) are applied, so a replay runs as fast as
+ * the records can be read. If the journal holds several games, the last one is kept. Events that come before
+ * any game has started, such as the tail of a game whose start is in a segment that was deleted, have no
+ * hunter to be applied to and are skipped.<p>
+ * Towns are rebuilt by the rules the replayer is given, which have to be the rules the games were played by,
+ * since a journal only records the index of each town's terrain.<p>
+ * Usage: java JournalReplayer [--rules file] directory
+ */
+
+public class JournalReplayer {
+    // the enum values, looked up once instead of copying the array on every event
+    private static final Item[] ITEMS = Item.values();
+    private static final Treasure[] TREASURES = Treasure.values();
+
+    // instance variables
+    private Hunter hunter;
+    private Town town;
+    private String mode;
+    private Ruleset rules;
+    private byte[] name;
+    private int nameLength;
+    private long events;
+    private long skipped;
+    private long games;
+    private SplittableRandom random;
+
+    /**
+     * Replays by the rules in use now.
+     */
+    public JournalReplayer() {
+        this(Ruleset.current());
+    }
+
+    /**
+     * @param rules The rules the journal's games were played by.
+     */
+    public JournalReplayer(Ruleset rules) {
+        this.rules = rules;
+        mode = "test";
+        name = new byte[0];
+        random = new SplittableRandom(0);
+    }
+
+    /**
+     * Reads every segment of a journal in order and applies its events.
+     *
+     * @param directory The journal's directory.
+     * @throws IOException if a segment can't be read.
+     */
+    public void replay(Path directory) throws IOException {
+        for (Path segment : GameJournal.segments(directory)) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buffer.remaining() >= GameJournal.RECORD_SIZE) {
+                    long record = buffer.getLong();
+                    int code = (int) (record >>> 56);
+                    if (code == 0) {
+                        // the unused tail of the last segment
+                        break;
+                    }
+                    apply(GameEvent.fromCode(code), (int) (record >>> 32) & 0xffff, (int) record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies one event to the game being rebuilt.
+     *
+     * @param event The kind of event.
+     * @param arg The event's argument.
+     * @param value The event's value.
+     */
+    public void apply(GameEvent event, int arg, int value) {
+        events++;
+        if (event == null) {
+            return;
+        }
+        if (hunter == null && event != GameEvent.GAME_STARTED && event != GameEvent.NAME && event != GameEvent.MODE_CHOSEN
+                || town == null && (event == GameEvent.DUG || event == GameEvent.SEARCHED)) {
+            skipped++;
+            return;
+        }
+        switch (event) {
+            case GAME_STARTED -> {
+                games++;
+                hunter = null;
+                town = null;
+                name = new byte[arg];
+                nameLength = 0;
+                if (arg == 0) {
+                    hunter = new Hunter("", 0);
+                }
+            }
+            case NAME -> {
+                for (int i = 0; i < arg && nameLength < name.length; i++) {
+                    name[nameLength++] = (byte) (value >>> (8 * i));
+                }
+                if (nameLength == name.length) {
+                    hunter = new Hunter(new String(name, StandardCharsets.UTF_8), 0);
+                }
+            }
+            case MODE_CHOSEN -> mode = TreasureHunter.MODES[arg];
+            case SAMURAI -> hunter.setSamurai();
+            case GOLD_CHANGED -> hunter.changeGold(value);
+            case ITEM_ADDED -> hunter.addItem(ITEMS[arg]);
+            case ITEM_REMOVED -> hunter.removeItem(ITEMS[arg]);
+            case KIT_SET -> hunter.setKitMask(value);
+            case TREASURE_FOUND -> hunter.addTreasure(TREASURES[arg].getTreasureName());
+            case TOWN_ENTERED -> {
+                Shop shop = new Shop(rules, TreasureHunter.modeIndex(mode), HeadlessWindow.INSTANCE);
+                town = new Town(shop, mode, HeadlessWindow.INSTANCE, random, arg & 0xf, TREASURES[(arg >> 4) & 0x3], (arg & 1 << 6) != 0);
+                // a town the hunter comes back to is rebuilt fresh, so it has to be told what already happened to it
+                town.restoreState((arg & 1 << 7) != 0, (arg & 1 << 8) != 0);
+                town.hunterArrives(hunter);
+            }
+            case DUG -> {
+                if (arg == GameEvent.DIG_GOLD) {
+                    town.restoreState(true, town.isTreasureSearched());
+                }
+            }
+            case SEARCHED -> town.restoreState(town.hasDugBefore(), true);
+            default -> {
+                // SHOP_ENTERED, ITEM_BOUGHT, ITEM_SOLD, TOWN_LEFT and TROUBLE only say what caused
+                // the effect events after them, STUCK and ALREADY_SEARCHED changed nothing, and the
+                // hunter works out GAME_OVER for themselves, so there is nothing to apply
+            }
+        }
+    }
+
+    // accessors
+    public Hunter getHunter() {
+        return hunter;
+    }
+
+    public Town getTown() {
+        return town;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * @return How many events had no hunter or town to be applied to.
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Ruleset rules = Ruleset.current();
+        Path directory = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--rules") && i + 1 < args.length) {
+                rules = Ruleset.load(Path.of(args[++i]));
+            } else {
+                directory = Path.of(args[i]);
+            }
+        }
+        if (directory == null) {
+            System.out.println("Usage: java JournalReplayer [--rules file] directory");
+            return;
+        }
+        JournalReplayer replayer = new JournalReplayer(rules);
+        long start = System.nanoTime();
+        replayer.replay(directory);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("Replayed %d events from %d game(s) in %.3f s (%.0f events/second)",
+                replayer.getEvents(), replayer.getGames(), seconds, replayer.getEvents() / seconds));
+        if (replayer.getSkipped() > 0) {
+            System.out.println("Skipped " + replayer.getSkipped() + " event(s) that came before any game started");
+        }
+        if (replayer.getHunter() != null) {
+            System.out.println("Mode: " + replayer.getMode());
+            System.out.println(replayer.getHunter());
+        }
+        if (replayer.getTown() != null) {
+            System.out.println(replayer.getTown());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram counts how long something took, in buckets whose width grows with the time,
+ * the same way an HDR histogram does.<p>
+ * Times below 64ns get a bucket each; above that every power of two is split into 32 buckets, so any
+ * time read back is within about 3% of the real one. The buckets are a fixed array of atomic counters,
+ * so recording never locks or allocates and many threads can record at once.
+ */
+
+public class LatencyHistogram implements LatencyHistogramMXBean {
+    // constants
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // enough buckets for any positive long
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // instance variables
+    private final String name;
+    private final AtomicLongArray counts;
+    private final LongAdder total;
+    private final LongAccumulator max;
+
+    /**
+     * @param name What is being timed, used when the histogram is printed or published.
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+        counts = new AtomicLongArray(BUCKETS);
+        total = new LongAdder();
+        max = new LongAccumulator(Math::max, 0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Counts one timing.
+     *
+     * @param nanos How long it took; negative times are counted as 0.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketOf(nanos));
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Counts the time since a reading of {@link System#nanoTime()}.
+     *
+     * @param startNanos When the timed work started.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) total.sum() / count;
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile A percentile from 0 to 100.
+     * @return The highest time in the bucket that percentile falls in, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= wanted) {
+                return Math.min(highestValueIn(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    public long getP50Nanos() {
+        return getValueAtPercentile(50);
+    }
+
+    public long getP90Nanos() {
+        return getValueAtPercentile(90);
+    }
+
+    public long getP99Nanos() {
+        return getValueAtPercentile(99);
+    }
+
+    public long getP999Nanos() {
+        return getValueAtPercentile(99.9);
+    }
+
+    public String toString() {
+        return String.format("%-10s count=%d mean=%.0fns p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns",
+                name, getCount(), getMeanNanos(), getP50Nanos(), getP90Nanos(), getP99Nanos(), getP999Nanos(), getMaxNanos());
+    }
+
+    /**
+     * @param nanos A time.
+     * @return The index of the bucket it is counted in.
+     */
+    static int bucketOf(long nanos) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS);
+        return shift * SUB_BUCKETS + (int) (nanos >>> shift);
+    }
+
+    /**
+     * @param bucket The index of a bucket.
+     * @return The highest time counted in it.
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * The LatencyHistogramMXBean is what JMX clients see of a {@link LatencyHistogram}.
+ * Every time is in nanoseconds.
+ */
+
+public interface LatencyHistogramMXBean {
+    long getCount();
+
+    double getMeanNanos();
+
+    long getMaxNanos();
+
+    long getP50Nanos();
+
+    long getP90Nanos();
+
+    long getP99Nanos();
+
+    long getP999Nanos();
+}
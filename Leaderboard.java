@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The Leaderboard keeps the best games of each mode as they finish: the fastest wins, the most gold held
+ * at the end, and the wins that took the fewest towns.<p>
+ * Each category of each mode is a {@link ConcurrentSkipListSet} trimmed back to its top entries after every
+ * insert, so any number of game threads can add to it at once without locking, and reading a board walks the
+ * list without ever holding up the writers. Once a board is full it publishes the worst score left on it as an
+ * atomic cutoff, and a game that can't beat it is turned away with a single read, so the many games that
+ * don't make the board cost next to nothing and only the few that do ever touch the list.<p>
+ * Equal scores are ordered by the game's seed, so a board is the same however the games were spread over
+ * threads and whichever finished first, and a run played again from its seed prints the same boards.
+ */
+
+public class Leaderboard {
+    // constants
+    public static final String[] CATEGORIES = {"Fastest win (turns)", "Most gold", "Fewest towns to win"};
+    public static final int FASTEST_WIN = 0;
+    public static final int MOST_GOLD = 1;
+    public static final int FEWEST_TOWNS = 2;
+    public static final int DEFAULT_SIZE = 10;
+    private static final int MODES = TreasureHunter.MODES.length;
+    // best first; equal scores go by seed, and then by name for the same seed played by different hunters
+    private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingLong(e -> e.key)
+            .thenComparingLong(e -> e.seed).thenComparing(e -> e.name);
+
+    // one leaderboard is shared by every game played in this JVM
+    public static final Leaderboard INSTANCE = new Leaderboard(DEFAULT_SIZE);
+
+    // instance variables
+    private int size;
+    // indexed by category * MODES + mode
+    private Board[] boards;
+
+    /**
+     * @param size How many entries each board keeps.
+     */
+    public Leaderboard(int size) {
+        this.size = size;
+        boards = new Board[CATEGORIES.length * MODES];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = new Board();
+        }
+    }
+
+    /**
+     * Offers a finished game to every board it could make.
+     *
+     * @param name The hunter's name.
+     * @param seed The game's seed, so it can be played again.
+     * @param mode The index of the mode in {@link TreasureHunter#MODES}.
+     * @param won Whether all three treasures were found.
+     * @param gold The gold held at the end of the game.
+     * @param turns How many menu choices were made.
+     * @param towns How many towns the hunter arrived in.
+     */
+    public void record(String name, long seed, int mode, boolean won, int gold, int turns, int towns) {
+        if (won) {
+            boards[FASTEST_WIN * MODES + mode].offer(turns, turns, name, seed);
+            boards[FEWEST_TOWNS * MODES + mode].offer(towns, towns, name, seed);
+        }
+        // the lists are kept best first, so more gold has to sort lower
+        boards[MOST_GOLD * MODES + mode].offer(-gold, gold, name, seed);
+    }
+
+    /**
+     * Offers a finished game to every board it could make.
+     *
+     * @param hunter The Hunter at the end of the game.
+     * @param seed The game's seed.
+     * @param mode The index of the mode.
+     * @param turns How many menu choices were made.
+     */
+    public void record(Hunter hunter, long seed, int mode, int turns) {
+        record(hunter.getHunterName(), seed, mode, hunter.hasWon(), hunter.getGold(), turns, hunter.getTownsVisited());
+    }
+
+    /**
+     * Takes a copy of one board as it is now.
+     *
+     * @param category One of {@link #FASTEST_WIN}, {@link #MOST_GOLD} or {@link #FEWEST_TOWNS}.
+     * @param mode The index of the mode.
+     * @return The board's entries, best first.
+     */
+    public List<Entry> top(int category, int mode) {
+        List<Entry> entries = new ArrayList<>(size);
+        for (Entry entry : boards[category * MODES + mode].entries) {
+            // a writer may not have trimmed its board yet
+            if (entries.size() == size) {
+                break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * @param mode The index of the mode.
+     * @return Every board of the mode that has anything on it.
+     */
+    public String toString(int mode) {
+        String str = "";
+        for (int category = 0; category < CATEGORIES.length; category++) {
+            List<Entry> entries = top(category, mode);
+            if (entries.isEmpty()) {
+                continue;
+            }
+            str += (str.isEmpty() ? "" : "\n") + CATEGORIES[category] + " in " + TreasureHunter.MODES[mode] + " mode:";
+            for (int i = 0; i < entries.size(); i++) {
+                str += "\n  " + (i + 1) + ". " + entries.get(i);
+            }
+        }
+        return str;
+    }
+
+    /**
+     * @return Every board that has anything on it.
+     */
+    public String toString() {
+        String str = "";
+        for (int mode = 0; mode < MODES; mode++) {
+            String boards = toString(mode);
+            if (!boards.isEmpty()) {
+                str += (str.isEmpty() ? "" : "\n") + boards;
+            }
+        }
+        return str;
+    }
+
+    /**
+     * One game on a board.
+     */
+    public static class Entry {
+        // instance variables
+        private final long key;
+        private final int score;
+        private final String name;
+        private final long seed;
+
+        Entry(long key, int score, String name, long seed) {
+            this.key = key;
+            this.score = score;
+            this.name = name;
+            this.seed = seed;
+        }
+
+        // accessors
+        public int getScore() {
+            return score;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public String toString() {
+            return name + " " + score + " (seed " + seed + ")";
+        }
+    }
+
+    /**
+     * The top entries of one category in one mode, lowest key first, then lowest seed first.
+     */
+    private class Board {
+        private final ConcurrentSkipListSet<Entry> entries;
+        // counts the entries, since ConcurrentSkipListSet.size() walks the whole list
+        private final AtomicInteger count;
+        // once the board is full, the best entry dropped from it so far; nothing that sorts after it can get
+        // on the board, and it only ever moves up the order
+        private final AtomicReference<Entry> cutoff;
+
+        Board() {
+            entries = new ConcurrentSkipListSet<>(ORDER);
+            count = new AtomicInteger();
+            cutoff = new AtomicReference<>();
+        }
+
+        void offer(long key, int score, String name, long seed) {
+            Entry worst = cutoff.get();
+            if (worst != null && (key > worst.key || key == worst.key && seed >= worst.seed)) {
+                return;
+            }
+            if (!entries.add(new Entry(key, score, name, seed))) {
+                // the same game played again
+                return;
+            }
+            if (count.incrementAndGet() > size) {
+                worst = entries.pollLast();
+                count.decrementAndGet();
+                if (worst != null) {
+                    // everything left sorts before it, so anything that sorts after it can be turned away
+                    cutoff.accumulateAndGet(worst, (old, dropped) -> old == null || ORDER.compare(dropped, old) < 0 ? dropped : old);
+                }
+            }
+        }
+    }
+}
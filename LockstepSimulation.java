@@ -0,0 +1,427 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The LockstepSimulation plays the same games as a {@link Simulation} with the {@link GreedyPolicy},
+ * without building a Hunter, Town or Shop for any of them.<p>
+ * Each worker keeps a batch of games side by side in parallel primitive arrays, one slot (a lane) per game:
+ * its random state, gold, kit and treasure masks, the town's terrain, hidden treasure and flags, and its tallies.
+ * Every pass over the batch plays one turn of every game, following the rules of {@link Town#lookForTrouble()},
+ * {@link Town#leaveTown()}, {@link Town#searchTreasure()} and the shop's buying and selling, with the prices
+ * and odds read from flat tables compiled from the {@link Ruleset} once per run. A finished game hands its lane
+ * to the next game straight away, so the batch stays full and nothing is allocated while playing.<p>
+ * Each lane draws from its game's seed in the same way as the game's own SplittableRandom, so every game
+ * plays out exactly as it does in the object model and the two give the same results for the same seed.<p>
+ * Usage: java LockstepSimulation [games] [mode letters] [threads] [seed]
+ */
+
+public class LockstepSimulation {
+    // constants
+    private static final int GAMES_PER_TASK = 1 << 14;
+    private static final int LANES = 1024;
+    private static final int ITEMS = Item.values().length;
+    private static final int SWORD = Item.SWORD.bit();
+    private static final int SWORD_ITEM = Item.SWORD.ordinal();
+    private static final int SAMURAI = TreasureHunter.modeIndex("samurai");
+    private static final int TEST = TreasureHunter.modeIndex("test");
+    // the same gamma and mixing as SplittableRandom, which every game is seeded with
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    // lane flags
+    private static final int SEARCHED = 1;
+    private static final int TOUGH = 2;
+    private static final int OVER = 4;
+
+    // instance variables
+    private int[] modeChoices;
+    private long runSeed;
+    private AliasTable terrainTable;
+    private AliasTable treasureTable;
+    private int terrainCount;
+    private int treasureCount;
+    private int[] terrainItem;
+    private int[] terrainItemBit;
+    private boolean[] swordCrosses;
+    private int[] buyPrices;
+    // indexed by mode * ITEMS + item
+    private int[] sellPrices;
+    private int[] startingGold;
+    private int[] arrivalGold;
+    private double[] breakChance;
+    private double[] brawlOdds;
+    private double[] toughness;
+    private double calmCutoff;
+    private double toughCutoff;
+    private int maxBrawlGold;
+
+    /**
+     * Compiles the rules in use into the tables every lane is played from.
+     *
+     * @param modeChoice The mode letters, as given to {@link Simulation}.
+     * @param runSeed The seed every game's seed is derived from.
+     */
+    public LockstepSimulation(String modeChoice, long runSeed) {
+        this.runSeed = runSeed;
+        Ruleset rules = Ruleset.current();
+        modeChoices = new int[modeChoice.length()];
+        for (int i = 0; i < modeChoices.length; i++) {
+            Hunter hunter = new Hunter("lockstep", 0);
+            modeChoices[i] = TreasureHunter.modeIndex(TreasureHunter.chooseMode(hunter, modeChoice.substring(i, i + 1), rules));
+        }
+
+        terrainTable = rules.getTerrainTable();
+        treasureTable = rules.getTreasureTable();
+        terrainCount = terrainTable.size();
+        treasureCount = treasureTable.size();
+        terrainItem = new int[terrainCount];
+        terrainItemBit = new int[terrainCount];
+        swordCrosses = new boolean[terrainCount];
+        for (int t = 0; t < terrainCount; t++) {
+            Terrain terrain = rules.getTerrain(t);
+            terrainItem[t] = terrain.getItem().ordinal();
+            terrainItemBit[t] = terrain.getItem().bit();
+            swordCrosses[t] = terrain.isCrossableWithSword();
+        }
+
+        int modes = TreasureHunter.MODES.length;
+        buyPrices = new int[ITEMS];
+        sellPrices = new int[modes * ITEMS];
+        startingGold = new int[modes];
+        arrivalGold = new int[modes];
+        breakChance = new double[modes];
+        brawlOdds = new double[modes];
+        toughness = new double[modes];
+        for (int mode = 0; mode < modes; mode++) {
+            Shop shop = new Shop(rules, mode, HeadlessWindow.INSTANCE);
+            for (Item item : Item.values()) {
+                buyPrices[item.ordinal()] = shop.getCostOfItem(item);
+                sellPrices[mode * ITEMS + item.ordinal()] = shop.getBuyBackCost(item.getItemName());
+            }
+            startingGold[mode] = rules.getStartingGold(mode);
+            arrivalGold[mode] = rules.getArrivalGold(mode);
+            breakChance[mode] = rules.getItemBreakChance(mode);
+            brawlOdds[mode] = rules.getBrawlOdds(mode);
+            toughness[mode] = rules.getToughness(mode);
+        }
+        calmCutoff = rules.getCalmTroubleCutoff();
+        toughCutoff = rules.getToughTroubleCutoff();
+        maxBrawlGold = rules.getMaxBrawlGold();
+    }
+
+    /**
+     * Plays a batch of games on the given pool.
+     *
+     * @param games How many games to play.
+     * @param pool The pool to run the games on.
+     * @return The merged results of all the games.
+     */
+    public SimulationResult run(long games, ForkJoinPool pool) {
+        return pool.invoke(new GameTask(0, games));
+    }
+
+    /**
+     * Plays a range of games in lockstep on one thread.
+     *
+     * @param from The number of the first game to play.
+     * @param to The number of the game to stop before.
+     * @return The results of the games.
+     */
+    public SimulationResult play(long from, long to) {
+        SimulationResult result = new SimulationResult();
+        Lanes lanes = new Lanes((int) Math.min(LANES, to - from));
+        long next = from;
+        int active = 0;
+        while (active < lanes.size && next < to) {
+            lanes.start(active++, next++);
+        }
+        while (active > 0) {
+            int lane = 0;
+            while (lane < active) {
+                if (!lanes.step(lane)) {
+                    lane++;
+                    continue;
+                }
+                lanes.finish(lane, result);
+                if (next < to) {
+                    lanes.start(lane++, next++);
+                } else {
+                    // fill the gap with the last game still going, and play it next
+                    lanes.move(--active, lane);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The state of a batch of games, one array element per game.
+     */
+    private class Lanes {
+        private int size;
+        private long[] seeds;
+        private int[] modes;
+        private int[] gold;
+        private int[] kits;
+        private int[] found;
+        private int[] terrains;
+        private int[] hidden;
+        private int[] flags;
+        private int[] turns;
+        private int[] brawlsWon;
+        private int[] brawlsLost;
+        private int[] itemsBroken;
+
+        Lanes(int size) {
+            this.size = size;
+            seeds = new long[size];
+            modes = new int[size];
+            gold = new int[size];
+            kits = new int[size];
+            found = new int[size];
+            terrains = new int[size];
+            hidden = new int[size];
+            flags = new int[size];
+            turns = new int[size];
+            brawlsWon = new int[size];
+            brawlsLost = new int[size];
+            itemsBroken = new int[size];
+        }
+
+        /**
+         * Starts a game in a lane, as {@link Simulation#playGame} does before its first turn.
+         */
+        void start(int lane, long game) {
+            int mode = modeChoices[(int) (game % modeChoices.length)];
+            seeds[lane] = GameSeeds.forGame(runSeed, game);
+            modes[lane] = mode;
+            gold[lane] = startingGold[mode];
+            kits[lane] = 0;
+            found[lane] = 0;
+            turns[lane] = 0;
+            brawlsWon[lane] = 0;
+            brawlsLost[lane] = 0;
+            itemsBroken[lane] = 0;
+            enterTown(lane);
+        }
+
+        /**
+         * Builds the next town around a lane's hunter, drawing in the same order as Town's constructor.
+         */
+        private void enterTown(int lane) {
+            int column = nextInt(lane, terrainCount);
+            terrains[lane] = terrainTable.pick(column, nextDouble(lane));
+            int mode = modes[lane];
+            flags[lane] = nextDouble(lane) < toughness[mode] ? TOUGH : 0;
+            column = nextInt(lane, treasureCount);
+            hidden[lane] = treasureTable.pick(column, nextDouble(lane));
+            gold[lane] += arrivalGold[mode];
+            if (mode == TEST) {
+                kits[lane] = Hunter.TEST_KIT;
+            }
+        }
+
+        /**
+         * Plays one turn of a lane's game, making the choice the GreedyPolicy would.
+         *
+         * @return true once the game is over or out of turns.
+         */
+        boolean step(int lane) {
+            turns[lane]++;
+            int kit = kits[lane];
+            int terrain = terrains[lane];
+            boolean hasSword = (kit & SWORD) != 0;
+            int capacity = modes[lane] == SAMURAI ? Hunter.SAMURAI_KIT_SIZE : Hunter.KIT_SIZE;
+            if ((flags[lane] & SEARCHED) == 0) {
+                search(lane);
+            } else if (modes[lane] == SAMURAI && !hasSword) {
+                buy(lane, SWORD_ITEM, capacity);
+            } else if ((kit & terrainItemBit[terrain]) != 0 || (swordCrosses[terrain] && hasSword)) {
+                move(lane, hasSword);
+            } else if (Integer.bitCount(kit) >= capacity) {
+                sell(lane);
+            } else if (hasSword) {
+                // a hunter with a sword takes what they like
+                kits[lane] = kit | terrainItemBit[terrain];
+            } else if (gold[lane] >= buyPrices[terrainItem[terrain]]) {
+                buy(lane, terrainItem[terrain], capacity);
+            } else {
+                lookForTrouble(lane, hasSword);
+            }
+            return (flags[lane] & OVER) != 0 || turns[lane] >= Simulation.MAX_TURNS;
+        }
+
+        private void search(int lane) {
+            flags[lane] |= SEARCHED;
+            Treasure treasure = Treasure.values()[hidden[lane]];
+            if (treasure != Treasure.DUST) {
+                found[lane] |= treasure.bit();
+                if ((found[lane] & Treasure.WINNING_MASK) == Treasure.WINNING_MASK) {
+                    flags[lane] |= OVER;
+                }
+            }
+        }
+
+        private void buy(int lane, int item, int capacity) {
+            int price = buyPrices[item];
+            int kit = kits[lane];
+            if ((price == 0 && item != SWORD_ITEM) || gold[lane] < price
+                    || (kit & 1 << item) != 0 || Integer.bitCount(kit) >= capacity) {
+                return;
+            }
+            gold[lane] -= price;
+            kits[lane] = kit | 1 << item;
+        }
+
+        private void sell(int lane) {
+            int kit = kits[lane];
+            int needed = terrainItem[terrains[lane]];
+            // anything but the item needed here, as GreedyPolicy.chooseItem picks
+            int others = kit & ~(1 << needed);
+            int item = others != 0 ? Integer.numberOfTrailingZeros(others) : needed;
+            int price = sellPrices[modes[lane] * ITEMS + item];
+            if (price <= 0 || (kit & 1 << item) == 0) {
+                return;
+            }
+            gold[lane] += price;
+            kits[lane] = kit & ~(1 << item);
+        }
+
+        private void move(int lane, boolean hasSword) {
+            int terrain = terrains[lane];
+            boolean usedSword = swordCrosses[terrain] && hasSword;
+            boolean broke = nextDouble(lane) < breakChance[modes[lane]] && !usedSword;
+            if (broke) {
+                itemsBroken[lane]++;
+                kits[lane] &= ~terrainItemBit[terrain];
+            }
+            enterTown(lane);
+        }
+
+        private void lookForTrouble(int lane, boolean hasSword) {
+            double cutoff = (flags[lane] & TOUGH) != 0 ? toughCutoff : calmCutoff;
+            if (nextDouble(lane) > cutoff) {
+                return;
+            }
+            int goldDiff = nextInt(lane, maxBrawlGold) + 1;
+            if (hasSword) {
+                brawlsWon[lane]++;
+                gold[lane] += goldDiff;
+                return;
+            }
+            double odds = brawlOdds[modes[lane]];
+            double chance = 0;
+            if (odds > 0) {
+                chance = nextDouble(lane) * odds;
+            }
+            if (chance > nextDouble(lane)) {
+                brawlsWon[lane]++;
+                gold[lane] += goldDiff;
+            } else {
+                brawlsLost[lane]++;
+                gold[lane] -= goldDiff;
+                if (gold[lane] < 0) {
+                    flags[lane] |= OVER;
+                }
+            }
+        }
+
+        void finish(int lane, SimulationResult result) {
+            boolean won = (found[lane] & Treasure.WINNING_MASK) == Treasure.WINNING_MASK;
+            result.record(modes[lane], won, (flags[lane] & OVER) != 0, gold[lane], turns[lane],
+                    brawlsWon[lane], brawlsLost[lane], itemsBroken[lane]);
+        }
+
+        /**
+         * Copies a game from one lane to another.
+         */
+        void move(int from, int to) {
+            seeds[to] = seeds[from];
+            modes[to] = modes[from];
+            gold[to] = gold[from];
+            kits[to] = kits[from];
+            found[to] = found[from];
+            terrains[to] = terrains[from];
+            hidden[to] = hidden[from];
+            flags[to] = flags[from];
+            turns[to] = turns[from];
+            brawlsWon[to] = brawlsWon[from];
+            brawlsLost[to] = brawlsLost[from];
+            itemsBroken[to] = itemsBroken[from];
+        }
+
+        private long nextLong(int lane) {
+            long z = seeds[lane] += GOLDEN_GAMMA;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+
+        private int nextInt(int lane) {
+            long z = seeds[lane] += GOLDEN_GAMMA;
+            z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+            return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+        }
+
+        private double nextDouble(int lane) {
+            return (nextLong(lane) >>> 11) * 0x1.0p-53;
+        }
+
+        /**
+         * @return A roll from 0 up to the bound, rejecting the rolls SplittableRandom rejects to stay unbiased.
+         */
+        private int nextInt(int lane, int bound) {
+            int r = nextInt(lane);
+            int m = bound - 1;
+            if ((bound & m) == 0) {
+                return r & m;
+            }
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt(lane) >>> 1) {
+                // try again
+            }
+            return r;
+        }
+    }
+
+    /**
+     * Splits a range of games in half until it is small enough to play on one thread.
+     */
+    @SuppressWarnings("serial")
+    private class GameTask extends RecursiveTask<SimulationResult> {
+        private long from;
+        private long to;
+
+        GameTask(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        protected SimulationResult compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                return play(from, to);
+            }
+            long mid = (from + to) >>> 1;
+            GameTask left = new GameTask(from, mid);
+            left.fork();
+            SimulationResult right = new GameTask(mid, to).compute();
+            return right.merge(left.join());
+        }
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        String modeChoice = args.length > 1 ? args[1].toLowerCase() : "n";
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : new SplittableRandom().nextLong();
+
+        LockstepSimulation simulation = new LockstepSimulation(modeChoice, seed);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        SimulationResult result = simulation.run(games, pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.println(result);
+        System.out.println("Threads: " + threads + ", seed: " + seed);
+        System.out.println(String.format("Time: %.2f s (%.0f games/second)", seconds, games / seconds));
+    }
+}
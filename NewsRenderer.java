@@ -0,0 +1,135 @@
+/**
+ * The NewsRenderer turns a game's {@link GameEvent}s into the news the player reads above the menu.<p>
+ * It listens on the game's {@link EventBus} like the journal and the metrics do, so the game logic only
+ * publishes events and never builds a message; the text is put together on a dispatcher thread, and the
+ * game picks it up with {@link #takeNews()} once the bus has drained at the end of the turn. The news of
+ * one turn is every message its events made, one after another, such as leaving one town and arriving
+ * in the next. The line that ends the game is kept apart, since it is shown in its own color.
+ */
+
+public class NewsRenderer implements EventBus.Handler {
+    // constants
+    private static final Item[] ITEMS = Item.values();
+    private static final Treasure[] TREASURES = Treasure.values();
+
+    // instance variables
+    private final String hunterName;
+    private final Ruleset rules;
+    private final boolean shared;
+    private final StringBuilder news;
+    private String ending;
+    // the terrain around the town the hunter is in, which is what they cross when they leave
+    private Terrain terrain;
+
+    /**
+     * @param hunterName The name the towns greet the hunter by.
+     * @param rules The rules the game's towns are built with, which name their terrain.
+     * @param shared Whether the game is played in a {@link SharedWorld}, where others dig up gold too.
+     */
+    public NewsRenderer(String hunterName, Ruleset rules, boolean shared) {
+        this.hunterName = hunterName;
+        this.rules = rules;
+        this.shared = shared;
+        news = new StringBuilder();
+    }
+
+    /**
+     * Hands back the news since the last call, and starts afresh.
+     * Only called from the game's thread, after {@link EventBus#catchUp()}.
+     *
+     * @return The news, or an empty string if nothing happened.
+     */
+    public String takeNews() {
+        String taken = news.toString();
+        news.setLength(0);
+        return taken;
+    }
+
+    /**
+     * @return The line that ended the game, or null if it hasn't ended.
+     */
+    public String getEnding() {
+        return ending;
+    }
+
+    public void onEvent(GameEvent event, int arg, int value) {
+        switch (event) {
+            case TOWN_ENTERED -> {
+                terrain = rules.getTerrain(arg & 0xf);
+                add("Welcome to town, " + hunterName + ".");
+                if ((arg & 1 << 6) != 0) {
+                    news.append("\nIt's pretty rough around here, so watch yourself.");
+                } else {
+                    news.append("\nWe're just a sleepy little town with mild mannered folk.");
+                }
+                if (value == 1) {
+                    news.append("\nThere is 1 other hunter in town.");
+                } else if (value > 1) {
+                    news.append("\nThere are ").append(value).append(" other hunters in town.");
+                }
+            }
+            case TOWN_LEFT -> {
+                String item = ITEMS[arg] == Item.SWORD ? Colors.RED + "Sword" + Colors.RESET : terrain.getNeededItem();
+                add("You used your " + item + " to cross the " + terrain.getTerrainName() + ".");
+                if (value != 0) {
+                    news.append("\nUnfortunately, you lost your ").append(item);
+                }
+            }
+            case STUCK -> add("You can't leave town, " + hunterName + ". You don't have a " + terrain.getNeededItem() + ".");
+            case TROUBLE -> renderTrouble(arg, value);
+            case DUG -> {
+                switch (arg) {
+                    case GameEvent.DIG_ALREADY_DUG -> add(shared ? "The gold in this town has already been dug up" : "You already dug for gold in this town");
+                    case GameEvent.DIG_NO_SHOVEL -> add("You can't dig for gold without a shovel");
+                    case GameEvent.DIG_GOLD -> add("You dug up " + value + " gold!");
+                    case GameEvent.DIG_BEATEN -> add("Another hunter dug up the gold just before you");
+                    default -> add("You dug but only found dirt");
+                }
+            }
+            case SEARCHED -> {
+                if (TREASURES[arg] == Treasure.DUST) {
+                    add("You found some dust");
+                } else {
+                    add("You found a " + TREASURES[arg].getTreasureName());
+                }
+            }
+            case ALREADY_SEARCHED -> add("This town has already been searched");
+            case GAME_OVER -> {
+                if (arg == GameEvent.GAME_WON) {
+                    ending = "Congratulations, you have found the last of the three treasures, you win!";
+                } else {
+                    ending = "\nYou lost the brawl and died from a debt of " + -value + " gold";
+                }
+            }
+            default -> {
+                // the rest change the hunter, whose status is drawn from the hunter itself
+            }
+        }
+    }
+
+    private void renderTrouble(int outcome, int gold) {
+        switch (outcome) {
+            case GameEvent.TROUBLE_NONE -> add("You couldn't find any trouble");
+            case GameEvent.TROUBLE_WON -> add("You want trouble, stranger!  You got it!\nOof! Umph! Ow!\n"
+                    + "Okay, stranger! You proved yer mettle. Here, take my gold."
+                    + "\nYou won the brawl and receive " + gold + " gold.");
+            case GameEvent.TROUBLE_LOST -> add("You want trouble, stranger!  You got it!\nOof! Umph! Ow!\n"
+                    + "That'll teach you to go lookin' fer trouble in MY town! Now pay up!"
+                    + "\nYou lost the brawl and pay " + gold + " gold.");
+            default -> add("Dude how is that even fair, you got a literal sword."
+                    + "\nYou're actually so cringe."
+                    + "\nJust take my money and leave me alone!"
+                    + "\nYou got " + gold + " gold.");
+        }
+    }
+
+    /**
+     * Starts a new message, on a line of its own if the turn already has news.
+     */
+    private void add(String message) {
+        if (news.length() > 0) {
+            news.append('\n');
+        }
+        news.append(message);
+    }
+}
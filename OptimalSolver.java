@@ -0,0 +1,696 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The OptimalSolver works out the best possible play for a mode, and the exact chance of winning with it.<p>
+ * The game is treated as a Markov decision process. A state is the hunter's gold, kit and treasures found,
+ * plus the terrain around the current town and the treasure still hidden in it, packed into one int index.
+ * The chance of winning from every state is found by value iteration over one flat array. Treasures are never
+ * lost, so the states are solved in layers, from two treasures found down to none, each layer only reading
+ * its own values and those of the layers already solved. Within a layer every sweep first works out the
+ * chance of winning on arriving in a new town, then updates each kind of town (terrain and hidden treasure)
+ * in place on its own fork-join task, so the answer doesn't depend on how many threads there are.<p>
+ * Every rule and probability comes from the {@link Ruleset} in use, the same one the game plays by,
+ * and the starting kit from {@link TreasureHunter}.<p>
+ * A few simplifications leave the answer unchanged: digging is left out since dug gold is never added
+ * to the hunter's purse, and looking for trouble until a fight breaks out counts as one action since
+ * there is no turn limit. Rulesets with tough towns aren't solved, since a town's toughness isn't part
+ * of the state.
+ * Gold above the cap is counted as the cap, so the chances found are a lower bound that stops
+ * growing once the cap covers everything worth buying.<p>
+ * Several actions are often equally good, and always picking the first could go round in circles,
+ * say selling an item and buying it straight back. So once a layer is solved, each state also gets the
+ * fewest actions that can lead to a win while only taking the best actions, and ties go to the action
+ * that gets closest.<p>
+ * Usage: java OptimalSolver [mode letter] [gold cap] [threads] [--samurai-sword] [--rules file] [--check games]
+ */
+
+public class OptimalSolver {
+    // constants
+    public static final int DEFAULT_GOLD_CAP = 100;
+    private static final double TOLERANCE = 1e-12;
+    // actions this close to the best are counted as just as good
+    private static final double TIE = 1e-9;
+    private static final short NO_WIN = Short.MAX_VALUE;
+    private static final int MAX_SWEEPS = 100_000;
+    private static final int ITEMS = Item.values().length;
+    private static final int KITS = 1 << ITEMS;
+    private static final int TREASURES = Treasure.values().length;
+    // one bit for each treasure but dust
+    private static final int FOUND = 1 << (TREASURES - 1);
+    private static final int WON = FOUND - 1;
+    private static final int SWORD = Item.SWORD.bit();
+    private static final int GOLD_ROWS_PER_TASK = 8;
+
+    // actions; if two are still tied on steps, the first one is taken
+    static final int QUIT = 0;
+    static final int HUNT = 1;
+    static final int MOVE = 2;
+    static final int BUY = 3;
+    static final int LOOK = BUY + ITEMS;
+    static final int SELL = LOOK + 1;
+
+    // instance variables
+    private final String mode;
+    private final int terrains;
+    // kinds of town: one for each terrain and hidden treasure
+    private final int towns;
+    private final int maxBrawlGold;
+    // false when no fight can ever be found, so looking for trouble does nothing
+    private final boolean canFight;
+    private final int goldCap;
+    private final int startGold;
+    private final int startKit;
+    private final int capacity;
+    private final int arrivalGold;
+    // -1 unless arriving in town replaces the kit, as it does in test mode
+    private final int arrivalKit;
+    private final double breakChance;
+    private final double brawlWinChance;
+    private final boolean swordForAll;
+    private final int[] buyPrices;
+    private final int[] sellPrices;
+    private final int[] terrainItem;
+    private final boolean[] swordCrosses;
+    private final double[] townChance;
+    private double[] values;
+    private double[] arrival;
+    private short[] steps;
+    private short[] arrivalSteps;
+    private int sweeps;
+
+    /**
+     * Reads the rules of a mode from the rules in use.
+     *
+     * @param modeChoice The mode letter, as typed on the welcome screen.
+     * @param goldCap The most gold told apart; anything above counts as this much.
+     * @param swordForAll false to only let samurai buy the sword, as the shop's listing suggests.
+     */
+    public OptimalSolver(String modeChoice, int goldCap, boolean swordForAll) {
+        Ruleset rules = Ruleset.current();
+        Hunter hunter = new Hunter("solver", 0);
+        mode = TreasureHunter.chooseMode(hunter, modeChoice, rules);
+        int modeIndex = TreasureHunter.modeIndex(mode);
+        if (rules.getToughness(modeIndex) > 0) {
+            throw new IllegalArgumentException("Rules with tough towns in " + mode + " mode can't be solved");
+        }
+        terrains = rules.getTerrainCount();
+        towns = terrains * TREASURES;
+        maxBrawlGold = rules.getMaxBrawlGold();
+        canFight = rules.getCalmTroubleCutoff() > 0;
+        this.goldCap = goldCap;
+        this.swordForAll = swordForAll || hunter.isSamurai();
+        startGold = Math.min(goldCap, hunter.getGold());
+        startKit = hunter.getKitMask();
+        capacity = hunter.getKitCapacity();
+        arrivalGold = rules.getArrivalGold(modeIndex);
+        if (mode.equals("test")) {
+            hunter.addAll();
+            arrivalKit = hunter.getKitMask();
+        } else {
+            arrivalKit = -1;
+        }
+        breakChance = rules.getItemBreakChance(modeIndex);
+        // a brawl is won when U1 * odds > U2 for two uniform rolls
+        double odds = rules.getBrawlOdds(modeIndex);
+        brawlWinChance = odds <= 1 ? odds / 2 : 1 - 1 / (2 * odds);
+
+        Shop shop = new Shop(rules, modeIndex, HeadlessWindow.INSTANCE);
+        buyPrices = new int[ITEMS];
+        sellPrices = new int[ITEMS];
+        for (Item item : Item.values()) {
+            buyPrices[item.ordinal()] = shop.getCostOfItem(item);
+            sellPrices[item.ordinal()] = shop.getBuyBackCost(item.getItemName());
+        }
+        terrainItem = new int[terrains];
+        swordCrosses = new boolean[terrains];
+        for (int t = 0; t < terrains; t++) {
+            Terrain terrain = rules.getTerrain(t);
+            terrainItem[t] = terrain.getItem().bit();
+            swordCrosses[t] = terrain.isCrossableWithSword();
+        }
+        townChance = new double[terrains * TREASURES];
+        for (int t = 0; t < terrains; t++) {
+            for (int r = 0; r < TREASURES; r++) {
+                townChance[t * TREASURES + r] = rules.getTerrainTable().chanceOf(t) * rules.getTreasureTable().chanceOf(r);
+            }
+        }
+    }
+
+    /**
+     * Runs value iteration until no state's chance of winning moves by more than {@link #TOLERANCE}.
+     *
+     * @param pool The pool to run the sweeps on.
+     */
+    public void solve(ForkJoinPool pool) {
+        values = new double[(goldCap + 1) * KITS * FOUND * terrains * TREASURES];
+        arrival = new double[(goldCap + 1) * KITS * FOUND];
+        steps = new short[values.length];
+        arrivalSteps = new short[arrival.length];
+        Arrays.fill(steps, NO_WIN);
+        sweeps = 0;
+        for (int treasuresLeft = 1; treasuresLeft < TREASURES; treasuresLeft++) {
+            for (int found = 0; found < WON; found++) {
+                if (Integer.bitCount(found) != TREASURES - 1 - treasuresLeft) {
+                    continue;
+                }
+                double change = 1;
+                while (change > TOLERANCE && sweeps < MAX_SWEEPS) {
+                    pool.invoke(new ArrivalTask(found, 0, goldCap + 1));
+                    change = pool.invoke(new SweepTask(found, 0, towns));
+                    sweeps++;
+                }
+                pool.invoke(new ArrivalTask(found, 0, goldCap + 1));
+
+                boolean changed = true;
+                while (changed) {
+                    pool.invoke(new ArrivalStepsTask(found, 0, goldCap + 1));
+                    changed = pool.invoke(new StepsTask(found, 0, towns));
+                }
+            }
+        }
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public int getSweeps() {
+        return sweeps;
+    }
+
+    public int getStateCount() {
+        return values.length;
+    }
+
+    /**
+     * @return The chance of winning a new game of this mode with perfect play.
+     */
+    public double getWinChance() {
+        return arrival[arrivalIndex(startGold, startKit, 0)];
+    }
+
+    /**
+     * @param gold The hunter's gold.
+     * @param kit The hunter's kit mask.
+     * @param treasureMask The hunter's treasure mask.
+     * @param terrain The index of the town's terrain.
+     * @param townTreasure The ordinal of the treasure still hidden in town, 0 if there is none.
+     * @return The chance of winning from there with perfect play.
+     */
+    public double getWinChance(int gold, int kit, int treasureMask, int terrain, int townTreasure) {
+        int found = treasureMask >> 1;
+        if (found == WON) {
+            return 1;
+        }
+        return values[index(Math.min(gold, goldCap), kit, found, terrain, remaining(found, townTreasure))];
+    }
+
+    /**
+     * Picks the best action. When several are equally good, picks the one that can lead to a win soonest.
+     *
+     * @param gold The hunter's gold.
+     * @param kit The hunter's kit mask.
+     * @param treasureMask The hunter's treasure mask.
+     * @param terrain The index of the town's terrain.
+     * @param townTreasure The ordinal of the treasure still hidden in town, 0 if there is none.
+     * @return One of the action constants; an item's ordinal is added to {@link #BUY} and {@link #SELL}.
+     */
+    public int bestAction(int gold, int kit, int treasureMask, int terrain, int townTreasure) {
+        int found = treasureMask >> 1;
+        gold = Math.min(gold, goldCap);
+        townTreasure = remaining(found, townTreasure);
+        if (found == WON) {
+            return QUIT;
+        } else if (townTreasure != 0) {
+            return HUNT;
+        }
+        double best = values[index(gold, kit, found, terrain, townTreasure)];
+        int bestAction = QUIT;
+        int fewestSteps = Integer.MAX_VALUE;
+        for (int action = MOVE; action < SELL + ITEMS; action++) {
+            if (actionValue(action, gold, kit, found, terrain, townTreasure) >= best - TIE) {
+                int actionSteps = stepsAfter(action, gold, kit, found, terrain, townTreasure);
+                if (actionSteps < fewestSteps) {
+                    fewestSteps = actionSteps;
+                    bestAction = action;
+                }
+            }
+        }
+        return bestAction;
+    }
+
+    /**
+     * @return A Policy that always takes the best action, for playing the solution in a {@link Simulation}.
+     */
+    public Policy policy() {
+        return new Policy() {
+            public String chooseAction(Hunter hunter, Town town) {
+                int action = bestAction(hunter, town);
+                if (action == HUNT) {
+                    return "h";
+                } else if (action == MOVE) {
+                    return "m";
+                } else if (action == LOOK) {
+                    return "l";
+                } else if (action >= SELL) {
+                    return "s";
+                } else if (action >= BUY) {
+                    return "b";
+                }
+                return "x";
+            }
+
+            public String chooseItem(Hunter hunter, Town town, boolean isBuying) {
+                int action = bestAction(hunter, town);
+                int item = action - (isBuying ? BUY : SELL);
+                return Item.values()[Math.max(0, Math.min(ITEMS - 1, item))].getItemName();
+            }
+
+            private int bestAction(Hunter hunter, Town town) {
+                int townTreasure = town.isTreasureSearched() ? 0 : town.getTreasure().ordinal();
+                return OptimalSolver.this.bestAction(Math.max(0, hunter.getGold()), hunter.getKitMask(),
+                        hunter.getTreasureMask(), town.getTerrainIndex(), townTreasure);
+            }
+        };
+    }
+
+    private int index(int gold, int kit, int found, int terrain, int treasure) {
+        return (((gold * KITS + kit) * FOUND + found) * terrains + terrain) * TREASURES + treasure;
+    }
+
+    private int arrivalIndex(int gold, int kit, int found) {
+        return (gold * KITS + kit) * FOUND + found;
+    }
+
+    /**
+     * @return The treasure still worth searching the town for: 0 for dust or one the hunter already has.
+     */
+    private static int remaining(int found, int treasure) {
+        if (treasure == 0 || (found & 1 << (treasure - 1)) != 0) {
+            return 0;
+        }
+        return treasure;
+    }
+
+    private double valueOf(int gold, int kit, int found, int terrain, int treasure) {
+        if (found == WON) {
+            return 1;
+        }
+        return values[index(gold, kit, found, terrain, treasure)];
+    }
+
+    /**
+     * @return The chance of winning after the action, or -1 if it can't be taken.
+     */
+    private double actionValue(int action, int gold, int kit, int found, int terrain, int treasure) {
+        boolean hasSword = (kit & SWORD) != 0;
+        if (action == HUNT) {
+            if (treasure == 0) {
+                return -1;
+            }
+            return valueOf(gold, kit, found | 1 << (treasure - 1), terrain, 0);
+        } else if (action == MOVE) {
+            boolean usedSword = swordCrosses[terrain] && hasSword;
+            if ((kit & terrainItem[terrain]) == 0 && !usedSword) {
+                return -1;
+            }
+            double intact = arrival[arrivalIndex(gold, kit, found)];
+            if (usedSword || breakChance == 0) {
+                return intact;
+            }
+            double broken = arrival[arrivalIndex(gold, kit & ~terrainItem[terrain], found)];
+            return (1 - breakChance) * intact + breakChance * broken;
+        } else if (action == LOOK) {
+            if (!canFight) {
+                return -1;
+            }
+            // looking again after finding no trouble is free, so only the fight counts
+            double won = 0;
+            double lost = 0;
+            for (int diff = 1; diff <= maxBrawlGold; diff++) {
+                won += valueOf(Math.min(goldCap, gold + diff), kit, found, terrain, treasure);
+                if (gold - diff >= 0) {
+                    lost += valueOf(gold - diff, kit, found, terrain, treasure);
+                }
+            }
+            double winChance = hasSword ? 1 : brawlWinChance;
+            return (winChance * won + (1 - winChance) * lost) / maxBrawlGold;
+        } else if (action >= SELL) {
+            int item = action - SELL;
+            int price = sellPrices[item];
+            if ((kit & 1 << item) == 0 || price <= 0) {
+                return -1;
+            }
+            return valueOf(Math.min(goldCap, gold + price), kit & ~(1 << item), found, terrain, treasure);
+        } else if (action >= BUY) {
+            int item = action - BUY;
+            if ((kit & 1 << item) != 0 || Integer.bitCount(kit) >= capacity) {
+                return -1;
+            }
+            // a hunter with a sword robs the shop instead
+            int price = hasSword ? 0 : buyPrices[item];
+            if (!hasSword && (price == 0 ? item != Item.SWORD.ordinal() || !swordForAll : gold < price)) {
+                return -1;
+            }
+            return valueOf(gold - price, kit | 1 << item, found, terrain, treasure);
+        }
+        return -1;
+    }
+
+    /**
+     * @return The fewest actions that can lead to a win after the action, or {@link #NO_WIN}.
+     */
+    private int stepsAfter(int action, int gold, int kit, int found, int terrain, int treasure) {
+        if (action == HUNT) {
+            int hunted = found | 1 << (treasure - 1);
+            return hunted == WON ? 0 : steps[index(gold, kit, hunted, terrain, 0)];
+        } else if (action == MOVE) {
+            int fewest = arrivalSteps[arrivalIndex(gold, kit, found)];
+            boolean usedSword = swordCrosses[terrain] && (kit & SWORD) != 0;
+            if (!usedSword && breakChance > 0) {
+                fewest = Math.min(fewest, arrivalSteps[arrivalIndex(gold, kit & ~terrainItem[terrain], found)]);
+            }
+            return fewest;
+        } else if (action == LOOK) {
+            double winChance = (kit & SWORD) != 0 ? 1 : brawlWinChance;
+            int fewest = NO_WIN;
+            for (int diff = 1; diff <= maxBrawlGold; diff++) {
+                if (winChance > 0) {
+                    fewest = Math.min(fewest, steps[index(Math.min(goldCap, gold + diff), kit, found, terrain, treasure)]);
+                }
+                if (winChance < 1 && gold >= diff) {
+                    fewest = Math.min(fewest, steps[index(gold - diff, kit, found, terrain, treasure)]);
+                }
+            }
+            return fewest;
+        } else if (action >= SELL) {
+            int item = action - SELL;
+            return steps[index(Math.min(goldCap, gold + sellPrices[item]), kit & ~(1 << item), found, terrain, treasure)];
+        } else {
+            int item = action - BUY;
+            int price = (kit & SWORD) != 0 ? 0 : buyPrices[item];
+            return steps[index(gold - price, kit | 1 << item, found, terrain, treasure)];
+        }
+    }
+
+    /**
+     * The same as taking the best of every {@link #actionValue}, written out with array strides
+     * since it is what every sweep spends its time on.
+     *
+     * @return The chance of winning with the best action.
+     */
+    private double bestValue(int gold, int kit, int found, int terrain, int treasure) {
+        if (treasure != 0) {
+            int hunted = found | 1 << (treasure - 1);
+            // hunting is never worse than anything else, the treasure can't be taken away
+            return hunted == WON ? 1 : values[index(gold, kit, hunted, terrain, 0)];
+        }
+        int here = index(gold, kit, found, terrain, treasure);
+        int kitStride = FOUND * towns;
+        int goldStride = KITS * kitStride;
+        boolean hasSword = (kit & SWORD) != 0;
+        double best = 0;
+
+        boolean usedSword = swordCrosses[terrain] && hasSword;
+        if (usedSword || (kit & terrainItem[terrain]) != 0) {
+            double intact = arrival[arrivalIndex(gold, kit, found)];
+            if (usedSword || breakChance == 0) {
+                best = intact;
+            } else {
+                double broken = arrival[arrivalIndex(gold, kit & ~terrainItem[terrain], found)];
+                best = (1 - breakChance) * intact + breakChance * broken;
+            }
+        }
+
+        boolean hasRoom = Integer.bitCount(kit) < capacity;
+        for (int item = 0; item < ITEMS; item++) {
+            int bit = 1 << item;
+            if ((kit & bit) != 0) {
+                int price = sellPrices[item];
+                if (price > 0) {
+                    int gold2 = Math.min(goldCap, gold + price);
+                    best = Math.max(best, values[here + (gold2 - gold) * goldStride - bit * kitStride]);
+                }
+            } else if (hasRoom) {
+                int price = hasSword ? 0 : buyPrices[item];
+                boolean canBuy = price == 0 ? hasSword || (bit == SWORD && swordForAll) : gold >= price;
+                if (canBuy) {
+                    best = Math.max(best, values[here - price * goldStride + bit * kitStride]);
+                }
+            }
+        }
+
+        if (!canFight) {
+            return best;
+        }
+        double won = 0;
+        double lost = 0;
+        for (int diff = 1; diff <= maxBrawlGold; diff++) {
+            won += values[here + (Math.min(goldCap, gold + diff) - gold) * goldStride];
+            if (gold >= diff) {
+                lost += values[here - diff * goldStride];
+            }
+        }
+        double winChance = hasSword ? 1 : brawlWinChance;
+        return Math.max(best, (winChance * won + (1 - winChance) * lost) / maxBrawlGold);
+    }
+
+    /**
+     * Works out the chance of winning on arriving in a new town, before its terrain and treasure are known.
+     */
+    @SuppressWarnings("serial")
+    private class ArrivalTask extends RecursiveTask<Void> {
+        private final int found;
+        private final int fromGold;
+        private final int toGold;
+
+        ArrivalTask(int found, int fromGold, int toGold) {
+            this.found = found;
+            this.fromGold = fromGold;
+            this.toGold = toGold;
+        }
+
+        protected Void compute() {
+            if (toGold - fromGold > GOLD_ROWS_PER_TASK) {
+                int mid = (fromGold + toGold) >>> 1;
+                invokeAll(new ArrivalTask(found, fromGold, mid), new ArrivalTask(found, mid, toGold));
+                return null;
+            }
+            for (int gold = fromGold; gold < toGold; gold++) {
+                int arrivedGold = Math.min(goldCap, gold + arrivalGold);
+                for (int kit = 0; kit < KITS; kit++) {
+                    int arrivedKit = arrivalKit >= 0 ? arrivalKit : kit;
+                    double value = 0;
+                    if (Integer.bitCount(arrivedKit) <= capacity) {
+                        for (int t = 0; t < terrains; t++) {
+                            for (int r = 0; r < TREASURES; r++) {
+                                value += townChance[t * TREASURES + r]
+                                        * values[index(arrivedGold, arrivedKit, found, t, remaining(found, r))];
+                            }
+                        }
+                    }
+                    arrival[arrivalIndex(gold, kit, found)] = value;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Updates every state of one layer in a range of towns, in place, and returns the biggest change it made.
+     * Gold goes up and kits go down so that buying reads values already updated in the same sweep.
+     */
+    @SuppressWarnings("serial")
+    private class SweepTask extends RecursiveTask<Double> {
+        private final int found;
+        private final int fromTown;
+        private final int toTown;
+
+        SweepTask(int found, int fromTown, int toTown) {
+            this.found = found;
+            this.fromTown = fromTown;
+            this.toTown = toTown;
+        }
+
+        protected Double compute() {
+            if (toTown - fromTown > 1) {
+                int mid = (fromTown + toTown) >>> 1;
+                SweepTask left = new SweepTask(found, fromTown, mid);
+                left.fork();
+                double right = new SweepTask(found, mid, toTown).compute();
+                return Math.max(right, left.join());
+            }
+            int t = fromTown / TREASURES;
+            int r = fromTown % TREASURES;
+            // a treasure the hunter already has is the same as none, so those towns are never looked up
+            if (r != remaining(found, r)) {
+                return 0.0;
+            }
+            double change = 0;
+            for (int gold = 0; gold <= goldCap; gold++) {
+                for (int kit = KITS - 1; kit >= 0; kit--) {
+                    if (Integer.bitCount(kit) > capacity) {
+                        continue;
+                    }
+                    double best = bestValue(gold, kit, found, t, r);
+                    int i = index(gold, kit, found, t, r);
+                    change = Math.max(change, Math.abs(best - values[i]));
+                    values[i] = best;
+                }
+            }
+            return change;
+        }
+    }
+
+    /**
+     * Works out the fewest actions that can lead to a win on arriving in a new town.
+     */
+    @SuppressWarnings("serial")
+    private class ArrivalStepsTask extends RecursiveTask<Void> {
+        private final int found;
+        private final int fromGold;
+        private final int toGold;
+
+        ArrivalStepsTask(int found, int fromGold, int toGold) {
+            this.found = found;
+            this.fromGold = fromGold;
+            this.toGold = toGold;
+        }
+
+        protected Void compute() {
+            if (toGold - fromGold > GOLD_ROWS_PER_TASK) {
+                int mid = (fromGold + toGold) >>> 1;
+                invokeAll(new ArrivalStepsTask(found, fromGold, mid), new ArrivalStepsTask(found, mid, toGold));
+                return null;
+            }
+            for (int gold = fromGold; gold < toGold; gold++) {
+                int arrivedGold = Math.min(goldCap, gold + arrivalGold);
+                for (int kit = 0; kit < KITS; kit++) {
+                    int arrivedKit = arrivalKit >= 0 ? arrivalKit : kit;
+                    short fewest = NO_WIN;
+                    if (Integer.bitCount(arrivedKit) <= capacity) {
+                        for (int t = 0; t < terrains; t++) {
+                            for (int r = 0; r < TREASURES; r++) {
+                                if (townChance[t * TREASURES + r] > 0) {
+                                    short townSteps = steps[index(arrivedGold, arrivedKit, found, t, remaining(found, r))];
+                                    fewest = (short) Math.min(fewest, townSteps);
+                                }
+                            }
+                        }
+                    }
+                    arrivalSteps[arrivalIndex(gold, kit, found)] = fewest;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Lowers the step counts of one layer in a range of towns, in place, by one action's worth.
+     * Returns whether anything changed.
+     */
+    @SuppressWarnings("serial")
+    private class StepsTask extends RecursiveTask<Boolean> {
+        private final int found;
+        private final int fromTown;
+        private final int toTown;
+
+        StepsTask(int found, int fromTown, int toTown) {
+            this.found = found;
+            this.fromTown = fromTown;
+            this.toTown = toTown;
+        }
+
+        protected Boolean compute() {
+            if (toTown - fromTown > 1) {
+                int mid = (fromTown + toTown) >>> 1;
+                StepsTask left = new StepsTask(found, fromTown, mid);
+                left.fork();
+                boolean right = new StepsTask(found, mid, toTown).compute();
+                return left.join() || right;
+            }
+            int t = fromTown / TREASURES;
+            int r = fromTown % TREASURES;
+            if (r != remaining(found, r)) {
+                return false;
+            }
+            boolean changed = false;
+            for (int gold = 0; gold <= goldCap; gold++) {
+                for (int kit = KITS - 1; kit >= 0; kit--) {
+                    if (Integer.bitCount(kit) > capacity) {
+                        continue;
+                    }
+                    int i = index(gold, kit, found, t, r);
+                    double best = values[i];
+                    if (best <= 0) {
+                        continue;
+                    }
+                    int fewest = NO_WIN;
+                    if (r != 0) {
+                        fewest = stepsAfter(HUNT, gold, kit, found, t, r);
+                    } else {
+                        for (int action = MOVE; action < SELL + ITEMS; action++) {
+                            if (actionValue(action, gold, kit, found, t, r) >= best - TIE) {
+                                fewest = Math.min(fewest, stepsAfter(action, gold, kit, found, t, r));
+                            }
+                        }
+                    }
+                    if (fewest < NO_WIN - 1 && fewest + 1 < steps[i]) {
+                        steps[i] = (short) (fewest + 1);
+                        changed = true;
+                    }
+                }
+            }
+            return changed;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String modeChoice = "h";
+        int goldCap = DEFAULT_GOLD_CAP;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean swordForAll = true;
+        long checkGames = 0;
+        int position = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--samurai-sword")) {
+                swordForAll = false;
+            } else if (args[i].equals("--check") && i + 1 < args.length) {
+                checkGames = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--rules") && i + 1 < args.length) {
+                Ruleset.install(Ruleset.load(Path.of(args[++i])));
+            } else if (position == 0) {
+                modeChoice = args[i].toLowerCase();
+                position++;
+            } else if (position == 1) {
+                goldCap = Integer.parseInt(args[i]);
+                position++;
+            } else {
+                threads = Integer.parseInt(args[i]);
+            }
+        }
+
+        OptimalSolver solver = new OptimalSolver(modeChoice, goldCap, swordForAll);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        solver.solve(pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("Mode: " + solver.getMode() + ", gold cap: " + goldCap + (swordForAll ? "" : ", sword for samurai only"));
+        System.out.println(String.format("Win chance with perfect play: %.10f", solver.getWinChance()));
+        System.out.println(String.format("States: %d, sweeps: %d, threads: %d, time: %.2f s",
+                solver.getStateCount(), solver.getSweeps(), threads, seconds));
+
+        if (checkGames > 0) {
+            Simulation simulation = new Simulation(modeChoice, solver.policy(), new SplittableRandom().nextLong());
+            System.out.println("Playing the solution " + checkGames + " times:");
+            System.out.println(simulation.run(checkGames, pool));
+        }
+        pool.shutdown();
+    }
+}
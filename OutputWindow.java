@@ -1,38 +1,214 @@
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import javax.swing.JFrame;
 import javax.swing.JTextPane;
-import javax.swing.text.Style;
+import javax.swing.SwingUtilities;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
 
-public class OutputWindow {
-    private StyledDocument doc;
-    private Style style;
+/**
+ * The OutputWindow shows the game in a Swing window.<p>
+ * Text written by the game thread is collected into a batch and only handed to the Swing event
+ * thread on {@link #flush()}. A batch that starts with {@link #clear()} is laid out in a brand-new
+ * document off screen and swapped in whole, so every redraw costs one layout pass and never flickers.
+ * A screen shown with {@link #showRegions} is patched in place instead, one changed region at a time.
+ */
+
+public class OutputWindow implements GameWindow {
+    // constants
+    private static final int FONT_SIZE = 16;
+
+    // instance variables
     private JTextPane textPane;
+    private Map<TextColor, AttributeSet> styles;
+
+    // the batch being built by the game thread
+    private List<String> pendingText;
+    private List<AttributeSet> pendingStyles;
+    private boolean pendingClear;
+    // the length of each region on screen, or null if the screen wasn't drawn by showRegions
+    private int[] regionLengths;
 
     public OutputWindow() {
+        this(new JTextPane());
         JFrame frame = new JFrame("Treasure Hunter");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(500, 400);
         frame.setLocation(300, 300);
-        textPane = new JTextPane();
-        textPane.setEditable(false);
-        doc = textPane.getStyledDocument();
-        style = doc.addStyle("my style", null);
-        StyleConstants.setFontSize(style, 16);
         frame.add(textPane);
         frame.getContentPane().setBackground(Color.black);
         frame.setVisible(true);
     }
 
-    public void addTextToWindow(String text, Color color) {
-        StyleConstants.setForeground(style, color);
-        try {
-            doc.insertString(doc.getLength(), text, style);
-        } catch (Exception ignored) { }
+    /**
+     * Writes into the given text pane without opening a frame for it,
+     * which also works on a headless JVM.
+     *
+     * @param textPane The text pane to write into.
+     */
+    OutputWindow(JTextPane textPane) {
+        this.textPane = textPane;
+        textPane.setEditable(false);
+        styles = new EnumMap<>(TextColor.class);
+        pendingText = new ArrayList<>();
+        pendingStyles = new ArrayList<>();
+        pendingClear = false;
+    }
+
+    public void addTextToWindow(String text, TextColor color) {
+        pendingText.add(text);
+        pendingStyles.add(styleFor(color));
     }
 
     public void clear() {
-        textPane.setText("");
+        pendingText.clear();
+        pendingStyles.clear();
+        pendingClear = true;
+        regionLengths = null;
+    }
+
+    public void showRegions(String[] texts, TextColor[] colors, boolean[] changed) {
+        if (regionLengths == null || regionLengths.length != texts.length) {
+            GameWindow.super.showRegions(texts, colors, changed);
+            regionLengths = lengthsOf(texts);
+            return;
+        }
+        long start = System.nanoTime();
+        // whatever is waiting to go below the regions belonged to the last screen
+        pendingText.clear();
+        pendingStyles.clear();
+
+        int[] starts = new int[texts.length];
+        int end = 0;
+        for (int i = 0; i < texts.length; i++) {
+            starts[i] = end;
+            end += regionLengths[i];
+        }
+        int[] oldLengths = regionLengths;
+        String[] text = texts.clone();
+        boolean[] patch = changed.clone();
+        AttributeSet[] textStyles = new AttributeSet[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            textStyles[i] = styleFor(colors[i]);
+        }
+        int regionsEnd = end;
+        SwingUtilities.invokeLater(() -> patchRegions(textPane.getStyledDocument(), regionsEnd, starts, oldLengths, text, textStyles, patch));
+        regionLengths = lengthsOf(texts);
+        GameMetrics.INSTANCE.recordRender(start);
+    }
+
+    public void flush() {
+        if (!pendingClear && pendingText.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        // fragments next to each other in the same color go in with one insert
+        List<String> runs = new ArrayList<>();
+        List<AttributeSet> runStyles = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        for (int i = 0; i < pendingText.size(); i++) {
+            if (i > 0 && pendingStyles.get(i) != pendingStyles.get(i - 1)) {
+                runs.add(run.toString());
+                runStyles.add(pendingStyles.get(i - 1));
+                run.setLength(0);
+            }
+            run.append(pendingText.get(i));
+        }
+        if (!pendingText.isEmpty()) {
+            runs.add(run.toString());
+            runStyles.add(pendingStyles.get(pendingStyles.size() - 1));
+        }
+        String[] text = runs.toArray(new String[0]);
+        AttributeSet[] textStyles = runStyles.toArray(new AttributeSet[0]);
+
+        if (pendingClear) {
+            // the new document isn't shown yet, so it is safe to fill it from this thread
+            StyledDocument doc = new DefaultStyledDocument();
+            insertAll(doc, text, textStyles);
+            SwingUtilities.invokeLater(() -> textPane.setDocument(doc));
+        } else {
+            SwingUtilities.invokeLater(() -> insertAll(textPane.getStyledDocument(), text, textStyles));
+        }
+
+        pendingText.clear();
+        pendingStyles.clear();
+        pendingClear = false;
+        GameMetrics.INSTANCE.recordRender(start);
+    }
+
+    /**
+     * Finds the cached style for a color, creating it the first time the color is used.
+     * The styles are never changed once made, so they can be shared with the event thread.
+     *
+     * @param color The text color.
+     * @return The style for text of that color.
+     */
+    private AttributeSet styleFor(TextColor color) {
+        AttributeSet style = styles.get(color);
+        if (style == null) {
+            SimpleAttributeSet newStyle = new SimpleAttributeSet();
+            StyleConstants.setFontSize(newStyle, FONT_SIZE);
+            StyleConstants.setForeground(newStyle, awtColorFor(color));
+            style = newStyle.copyAttributes();
+            styles.put(color, style);
+        }
+        return style;
+    }
+
+    /**
+     * @param color One of the game's text colors.
+     * @return The AWT color it is drawn in.
+     */
+    private static Color awtColorFor(TextColor color) {
+        switch (color) {
+            case RED:
+                return Color.red;
+            case GREEN:
+                return Color.green;
+            case PINK:
+                return Color.pink;
+            default:
+                return Color.blue;
+        }
+    }
+
+    /**
+     * Cuts off everything below the regions, then replaces the changed regions from the bottom up
+     * so that the offsets of the regions above stay put.
+     */
+    private static void patchRegions(StyledDocument doc, int regionsEnd, int[] starts, int[] oldLengths,
+                                     String[] text, AttributeSet[] textStyles, boolean[] changed) {
+        try {
+            doc.remove(regionsEnd, doc.getLength() - regionsEnd);
+            for (int i = text.length - 1; i >= 0; i--) {
+                if (changed[i]) {
+                    doc.remove(starts[i], oldLengths[i]);
+                    doc.insertString(starts[i], text[i], textStyles[i]);
+                }
+            }
+        } catch (BadLocationException ignored) { }
+    }
+
+    private static int[] lengthsOf(String[] texts) {
+        int[] lengths = new int[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            lengths[i] = texts[i].length();
+        }
+        return lengths;
+    }
+
+    private static void insertAll(StyledDocument doc, String[] text, AttributeSet[] textStyles) {
+        try {
+            for (int i = 0; i < text.length; i++) {
+                doc.insertString(doc.getLength(), text[i], textStyles[i]);
+            }
+        } catch (BadLocationException ignored) { }
     }
 }
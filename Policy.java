@@ -0,0 +1,26 @@
+/**
+ * Policy Interface<br /><br />
+ * A Policy plays the game in place of a person. It is asked for a menu choice every turn,
+ * and for an item whenever it decides to buy or sell at the shop.
+ */
+
+public interface Policy {
+    /**
+     * Picks the next move from the main menu.
+     *
+     * @param hunter The Hunter being played.
+     * @param town The Town the Hunter is in.
+     * @return One of the menu letters: "b", "s", "m", "l", "d", "h" or "x".
+     */
+    String chooseAction(Hunter hunter, Town town);
+
+    /**
+     * Picks the item to buy or sell after the policy chose "b" or "s".
+     *
+     * @param hunter The Hunter being played.
+     * @param town The Town the Hunter is in.
+     * @param isBuying Whether the Hunter is buying or selling.
+     * @return The name of the item.
+     */
+    String chooseItem(Hunter hunter, Town town, boolean isBuying);
+}
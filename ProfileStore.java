@@ -0,0 +1,346 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The ProfileStore keeps every hunter's lifetime record across sessions: games played and won in each mode,
+ * the most gold they ever finished with, and every treasure they have ever found.<p>
+ * Profiles live in one memory-mapped file as fixed-size records of {@link #RECORD_SIZE} bytes, laid out as an
+ * open-addressing hash table keyed by the hunter's name. A lookup hashes the name's chars, probes the table
+ * and compares the stored chars in place, so looking up or updating a profile allocates nothing on the heap,
+ * and the profiles themselves are off the heap where the garbage collector never sees them. The file is
+ * mapped in 1 GB pieces, so it can hold tens of millions of profiles, and only the pages touched take up
+ * memory or disk.<p>
+ * Names are told apart by a 64-bit hash of the whole name, its length and its first {@link #NAME_CHARS} chars.
+ * The table never grows; it is full at three quarters of the capacity it was created with, which is set when
+ * the file is first made, and after that new hunters are turned away while known ones are still recorded.
+ * The store holds an exclusive lock on its file while it is open, since two processes writing the same
+ * table would corrupt it.<p>
+ * Usage: java ProfileStore file [--capacity profiles] [name...] to print profiles, creating the file with the given
+ * capacity if it doesn't exist.
+ */
+
+public class ProfileStore implements AutoCloseable {
+    // constants
+    public static final int RECORD_SIZE = 128;
+    public static final int NAME_CHARS = 24;
+    public static final long DEFAULT_CAPACITY = 1L << 20;
+    private static final int MAGIC = 0x54485046;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MODES = TreasureHunter.MODES.length;
+    private static final int RECORDS_PER_MAP = 1 << 23;
+    // header layout
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_COUNT = 16;
+    // record layout; a hash of 0 marks an empty slot
+    private static final int HASH = 0;
+    private static final int NAME_LENGTH = 8;
+    private static final int NAME = 12;
+    private static final int GAMES = NAME + 2 * NAME_CHARS;
+    private static final int MODE_GAMES = GAMES + 4;
+    private static final int MODE_WINS = MODE_GAMES + 4 * MODES;
+    private static final int BEST_GOLD = MODE_WINS + 4 * MODES;
+    private static final int TREASURES = BEST_GOLD + 4;
+    private static final int LAST_PLAYED = TREASURES + 4;
+
+    // instance variables
+    private FileChannel channel;
+    private FileLock lock;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] maps;
+    private long capacity;
+    private long count;
+
+    /**
+     * Opens a profile store, creating it with room for {@link #DEFAULT_CAPACITY} profiles if it doesn't exist.
+     *
+     * @param file The store's file.
+     * @throws IOException if the file can't be opened or isn't a profile store.
+     */
+    public ProfileStore(Path file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens a profile store, creating it if it doesn't exist.
+     *
+     * @param file The store's file.
+     * @param capacity How many slots a new store gets, rounded up to a power of two; ignored if the store exists.
+     * @throws IOException if the file can't be opened, is in use by another store or isn't a profile store.
+     */
+    public ProfileStore(Path file, long capacity) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException(file + " is in use by another profile store");
+        }
+        // only checked once the lock is held, so two stores can't both create the file
+        boolean exists = channel.size() > 0;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (exists) {
+            if (header.getInt(HEADER_MAGIC) != MAGIC || header.getInt(HEADER_VERSION) != VERSION) {
+                channel.close();
+                throw new IOException(file + " is not a profile store");
+            }
+            this.capacity = header.getLong(HEADER_CAPACITY);
+            count = header.getLong(HEADER_COUNT);
+        } else {
+            this.capacity = Long.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            header.putInt(HEADER_MAGIC, MAGIC);
+            header.putInt(HEADER_VERSION, VERSION);
+            header.putLong(HEADER_CAPACITY, this.capacity);
+            header.putLong(HEADER_COUNT, 0);
+        }
+
+        int mapCount = (int) ((this.capacity + RECORDS_PER_MAP - 1) / RECORDS_PER_MAP);
+        maps = new MappedByteBuffer[mapCount];
+        for (int i = 0; i < mapCount; i++) {
+            long records = Math.min(RECORDS_PER_MAP, this.capacity - (long) i * RECORDS_PER_MAP);
+            maps[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + (long) i * RECORDS_PER_MAP * RECORD_SIZE, records * RECORD_SIZE);
+        }
+    }
+
+    /**
+     * Adds one finished game to a hunter's profile, creating the profile if it is their first.
+     *
+     * @param name The hunter's name.
+     * @param mode The index of the mode in {@link TreasureHunter#MODES}.
+     * @param won Whether the game was won.
+     * @param gold The gold the hunter finished with.
+     * @param treasureMask The treasures found in the game, as a mask of {@link Treasure#bit()} values.
+     * @return Whether the game was recorded; false if the hunter is new and the store is full.
+     */
+    public synchronized boolean recordGame(String name, int mode, boolean won, int gold, int treasureMask) {
+        long hash = hash(name);
+        long slot = probe(name, hash);
+        if (slot < 0) {
+            if (isFull()) {
+                return false;
+            }
+            slot = -slot - 1;
+            insert(slot, name, hash);
+        }
+        MappedByteBuffer map = mapOf(slot);
+        int at = offsetOf(slot);
+        int games = map.getInt(at + GAMES);
+        map.putInt(at + BEST_GOLD, games == 0 ? gold : Math.max(gold, map.getInt(at + BEST_GOLD)));
+        map.putInt(at + GAMES, games + 1);
+        map.putInt(at + MODE_GAMES + 4 * mode, map.getInt(at + MODE_GAMES + 4 * mode) + 1);
+        if (won) {
+            map.putInt(at + MODE_WINS + 4 * mode, map.getInt(at + MODE_WINS + 4 * mode) + 1);
+        }
+        map.putInt(at + TREASURES, map.getInt(at + TREASURES) | treasureMask);
+        map.putLong(at + LAST_PLAYED, System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Looks up a hunter's profile.
+     *
+     * @param name The hunter's name.
+     * @return The profile's slot, for the getters, or -1 if the hunter has no profile.
+     */
+    public synchronized long find(String name) {
+        long slot = probe(name, hash(name));
+        return slot < 0 ? -1 : slot;
+    }
+
+    // accessors, by the slot find returned
+    public synchronized int getGames(long slot) {
+        return mapOf(slot).getInt(offsetOf(slot) + GAMES);
+    }
+
+    public synchronized int getGames(long slot, int mode) {
+        return mapOf(slot).getInt(offsetOf(slot) + MODE_GAMES + 4 * mode);
+    }
+
+    public synchronized int getWins(long slot, int mode) {
+        return mapOf(slot).getInt(offsetOf(slot) + MODE_WINS + 4 * mode);
+    }
+
+    public synchronized int getWins(long slot) {
+        int wins = 0;
+        for (int mode = 0; mode < MODES; mode++) {
+            wins += getWins(slot, mode);
+        }
+        return wins;
+    }
+
+    public synchronized int getBestGold(long slot) {
+        return mapOf(slot).getInt(offsetOf(slot) + BEST_GOLD);
+    }
+
+    public synchronized int getTreasureMask(long slot) {
+        return mapOf(slot).getInt(offsetOf(slot) + TREASURES);
+    }
+
+    public synchronized long getLastPlayed(long slot) {
+        return mapOf(slot).getLong(offsetOf(slot) + LAST_PLAYED);
+    }
+
+    public synchronized long size() {
+        return count;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Whether the store has no room left for a new hunter.
+     */
+    public synchronized boolean isFull() {
+        return count >= capacity / 4 * 3;
+    }
+
+    /**
+     * @param name The hunter's name.
+     * @return A one-line summary of the hunter's profile, or null if they have none.
+     */
+    public synchronized String describe(String name) {
+        long slot = find(name);
+        if (slot < 0) {
+            return null;
+        }
+        String str = name + " has played " + getGames(slot) + " games and won " + getWins(slot) + ".";
+        str += " Best gold: " + getBestGold(slot) + ".";
+        String treasures = "";
+        for (Treasure treasure : Treasure.values()) {
+            if ((getTreasureMask(slot) & treasure.bit()) != 0) {
+                treasures += (treasures.isEmpty() ? "" : ", ") + treasure.getTreasureName();
+            }
+        }
+        if (!treasures.isEmpty()) {
+            str += " Treasures found: " + treasures + ".";
+        }
+        return str;
+    }
+
+    /**
+     * Writes every change back to disk and closes the store, which releases its lock on the file.
+     */
+    public synchronized void close() throws IOException {
+        header.putLong(HEADER_COUNT, count);
+        header.force();
+        for (MappedByteBuffer map : maps) {
+            map.force();
+        }
+        channel.close();
+    }
+
+    /**
+     * Finds a name's slot by linear probing from its hash.
+     *
+     * @return The name's slot, or -(the empty slot it would go in) - 1 if it isn't in the table.
+     */
+    private long probe(String name, long hash) {
+        long mask = capacity - 1;
+        long slot = hash & mask;
+        while (true) {
+            MappedByteBuffer map = mapOf(slot);
+            int at = offsetOf(slot);
+            long stored = map.getLong(at + HASH);
+            if (stored == 0) {
+                return -slot - 1;
+            }
+            if (stored == hash && matches(map, at, name)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean matches(MappedByteBuffer map, int at, String name) {
+        if (map.getInt(at + NAME_LENGTH) != name.length()) {
+            return false;
+        }
+        int chars = Math.min(NAME_CHARS, name.length());
+        for (int i = 0; i < chars; i++) {
+            if (map.getChar(at + NAME + 2 * i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(long slot, String name, long hash) {
+        MappedByteBuffer map = mapOf(slot);
+        int at = offsetOf(slot);
+        map.putInt(at + NAME_LENGTH, name.length());
+        int chars = Math.min(NAME_CHARS, name.length());
+        for (int i = 0; i < chars; i++) {
+            map.putChar(at + NAME + 2 * i, name.charAt(i));
+        }
+        // the hash goes in last, since it is what marks the slot as taken
+        map.putLong(at + HASH, hash);
+        count++;
+        header.putLong(HEADER_COUNT, count);
+    }
+
+    private MappedByteBuffer mapOf(long slot) {
+        return maps[(int) (slot / RECORDS_PER_MAP)];
+    }
+
+    private static int offsetOf(long slot) {
+        return (int) (slot % RECORDS_PER_MAP) * RECORD_SIZE;
+    }
+
+    /**
+     * @return A 64-bit hash of every char of the name, never 0.
+     */
+    static long hash(String name) {
+        // FNV-1a over the chars, then the SplitMix64 finisher to spread the low bits the table is indexed by
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h = (h ^ name.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Works out the capacity to create a store with so that it holds the given number of profiles,
+     * for the --profiles-capacity options.
+     *
+     * @param profiles How many profiles the store should have room for.
+     * @return The capacity to pass to {@link #ProfileStore(Path, long)}.
+     */
+    public static long capacityFor(long profiles) {
+        if (profiles < 1) {
+            throw new IllegalArgumentException("A profile store needs room for at least one profile: " + profiles);
+        }
+        // the table is full at three quarters, and is never smaller than four slots
+        return Math.max(4, (profiles * 4 + 2) / 3);
+    }
+
+    public static void main(String[] args) throws IOException {
+        long capacity = DEFAULT_CAPACITY;
+        int first = 1;
+        if (args.length > 2 && args[1].equals("--capacity")) {
+            capacity = capacityFor(Long.parseLong(args[2]));
+            first = 3;
+        }
+        try (ProfileStore store = new ProfileStore(Path.of(args[0]), capacity)) {
+            System.out.println(store.size() + " profiles, room for " + store.getCapacity() / 4 * 3);
+            for (int i = first; i < args.length; i++) {
+                String profile = store.describe(args[i].toLowerCase());
+                System.out.println(profile != null ? profile : args[i] + " has no profile.");
+            }
+        }
+    }
+}
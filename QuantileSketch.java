@@ -0,0 +1,197 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The QuantileSketch class keeps the count, mean, extremes and approximate quantiles of a stream of whole numbers
+ * in a bounded amount of memory.<p>
+ * Values are counted in the same log-linear buckets as {@link LatencyHistogram}, so any quantile is within about
+ * 3% of the true value, and small values are exact. Negative values, such as the gold of a hunter who died in
+ * debt, are counted by their size in a second set of buckets. Only the buckets up to the largest size seen are
+ * allocated, which is a few hundred longs for turn counts and gold. Two sketches are merged by adding up their buckets,
+ * so each worker can keep its own and they can be combined in any order.
+ */
+
+public class QuantileSketch {
+    // instance variables
+    private long[] counts;
+    // the negative values, by their size
+    private long[] negativeCounts;
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+
+    public QuantileSketch() {
+        counts = new long[0];
+        negativeCounts = new long[0];
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    /**
+     * Counts one value.
+     *
+     * @param value The value.
+     */
+    public void record(long value) {
+        if (value >= 0) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            if (bucket >= counts.length) {
+                counts = Arrays.copyOf(counts, bucket + 1);
+            }
+            counts[bucket]++;
+        } else {
+            int bucket = LatencyHistogram.bucketOf(sizeOf(value));
+            if (bucket >= negativeCounts.length) {
+                negativeCounts = Arrays.copyOf(negativeCounts, bucket + 1);
+            }
+            negativeCounts[bucket]++;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds another sketch into this one.
+     *
+     * @param other The sketch to merge in.
+     * @return this sketch, to allow chaining.
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        counts = add(counts, other.counts);
+        negativeCounts = add(negativeCounts, other.negativeCounts);
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Writes the sketch so that {@link #readFrom(DataInput)} can rebuild it in another process.
+     *
+     * @param out Where the sketch is written.
+     * @throws IOException if it can't be written.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        writeBuckets(out, counts);
+        writeBuckets(out, negativeCounts);
+        out.writeLong(count);
+        out.writeLong(sum);
+        out.writeLong(min);
+        out.writeLong(max);
+    }
+
+    /**
+     * @param in Where a sketch was written by {@link #writeTo(DataOutput)}.
+     * @return The sketch.
+     * @throws IOException if it can't be read.
+     */
+    public static QuantileSketch readFrom(DataInput in) throws IOException {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.counts = readBuckets(in);
+        sketch.negativeCounts = readBuckets(in);
+        sketch.count = in.readLong();
+        sketch.sum = in.readLong();
+        sketch.min = in.readLong();
+        sketch.max = in.readLong();
+        return sketch;
+    }
+
+    // accessors
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * @param quantile A fraction between 0 and 1.
+     * @return The smallest value that at least that fraction of the values are no bigger than,
+     * rounded up to the top of its bucket but never above the largest value seen.
+     */
+    public long getValueAtQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        // the negative values come first, from the biggest size down, and the top of each of their buckets
+        // is the value with the smallest size in it
+        for (int i = negativeCounts.length - 1; i >= 0; i--) {
+            seen += negativeCounts[i];
+            if (seen >= rank) {
+                return Math.min(-lowestValueIn(i), max);
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.highestValueIn(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return The size of a negative value, where the size of {@link Long#MIN_VALUE} is taken as {@link Long#MAX_VALUE}.
+     */
+    private static long sizeOf(long value) {
+        return value == Long.MIN_VALUE ? Long.MAX_VALUE : -value;
+    }
+
+    /**
+     * @return The lowest value counted in a bucket.
+     */
+    private static long lowestValueIn(int bucket) {
+        return bucket == 0 ? 0 : LatencyHistogram.highestValueIn(bucket - 1) + 1;
+    }
+
+    private static long[] add(long[] into, long[] from) {
+        if (from.length > into.length) {
+            into = Arrays.copyOf(into, from.length);
+        }
+        for (int i = 0; i < from.length; i++) {
+            into[i] += from[i];
+        }
+        return into;
+    }
+
+    private static void writeBuckets(DataOutput out, long[] buckets) throws IOException {
+        out.writeInt(buckets.length);
+        for (long bucketCount : buckets) {
+            out.writeLong(bucketCount);
+        }
+    }
+
+    private static long[] readBuckets(DataInput in) throws IOException {
+        int buckets = in.readInt();
+        if (buckets < 0 || buckets > LatencyHistogram.bucketOf(Long.MAX_VALUE) + 1) {
+            throw new IOException("Bad sketch with " + buckets + " buckets");
+        }
+        long[] counts = new long[buckets];
+        for (int i = 0; i < buckets; i++) {
+            counts[i] = in.readLong();
+        }
+        return counts;
+    }
+
+    public String toString() {
+        return String.format("mean %.2f, min %d, p50 %d, p90 %d, p99 %d, max %d",
+                getMean(), getMin(), getValueAtQuantile(0.5), getValueAtQuantile(0.9), getValueAtQuantile(0.99), getMax());
+    }
+}
@@ -0,0 +1,620 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The RoutePlanner finds the cheapest way across a rectangle of the world's map, to the nearest town that
+ * hasn't been searched or to any town the hunter picks.<p>
+ * Towns are linked to their four neighbours, and leaving a town means crossing its terrain, so every way out
+ * of a town costs the same: nothing with a sword that cuts through, the expected cost of replacing the item
+ * if it breaks when the hunter has it, and the shop price on top of that when they don't. A missing item is
+ * charged at every crossing, as if it broke every time, since the plan is redone with the new kit once it
+ * has been bought. A tiny cost per move makes the shorter of two equally cheap routes win.<p>
+ * A shortest-path tree from a town, built with Dijkstra's algorithm over flat arrays, answers every question
+ * about routes from that town, so trees are kept in a small cache keyed by the town and the hunter's kit.
+ * When the kit changes, a cached tree is still used if none of the terrains its routes cross got cheaper or
+ * dearer and no terrain on the map got cheaper, since then every route in it costs what it did and every
+ * other route costs at least as much; that is the case whenever an item is sold or broken that the routes
+ * don't need. Routes to a single town that has no tree use A* instead, guided by the cheapest crossing times
+ * the distance left.<p>
+ * Usage: java RoutePlanner --check [maps] [--seed n] [--rules file] to check the tree cache, and the planner against a
+ * brute-force search on random maps.
+ */
+
+public class RoutePlanner {
+    // constants
+    public static final int DEFAULT_RADIUS = 32;
+    public static final int DEFAULT_CACHE_SIZE = 16;
+    private static final double STEP_COST = 0.001;
+    private static final int NO_PARENT = -1;
+
+    // instance variables
+    private int minX;
+    private int minY;
+    private int width;
+    private int height;
+    // the terrain index of every town, row by row from the south-west corner
+    private byte[] terrains;
+    private BitSet searched;
+    // a mask of the terrains of every town on the map
+    private int mapTerrains;
+    private Terrain[] terrainTypes;
+    private int[] prices;
+    private double breakChance;
+    private LinkedHashMap<Long, Tree> trees;
+    private int treesBuilt;
+    // reused by every A* search
+    private double[] scratchCost;
+    private int[] scratchParent;
+    private BitSet scratchClosed;
+    private NodeHeap heap;
+
+    /**
+     * @param minX The east-west coordinate of the south-west corner.
+     * @param minY The north-south coordinate of the south-west corner.
+     * @param width How many towns there are from west to east.
+     * @param height How many towns there are from south to north.
+     * @param terrains The terrain index of every town, row by row from the south-west corner.
+     * @param rules The rules the terrains, prices and break chance come from.
+     * @param mode The index of the mode of the game.
+     * @param cacheSize How many shortest-path trees are kept.
+     */
+    public RoutePlanner(int minX, int minY, int width, int height, byte[] terrains, Ruleset rules, int mode, int cacheSize) {
+        this.minX = minX;
+        this.minY = minY;
+        this.width = width;
+        this.height = height;
+        this.terrains = terrains;
+        searched = new BitSet(width * height);
+        for (byte terrain : terrains) {
+            mapTerrains |= 1 << terrain;
+        }
+        terrainTypes = new Terrain[rules.getTerrainCount()];
+        prices = new int[terrainTypes.length];
+        for (int i = 0; i < terrainTypes.length; i++) {
+            terrainTypes[i] = rules.getTerrain(i);
+            prices[i] = rules.getCatalog().getBaseCost(terrainTypes[i].getItem());
+        }
+        breakChance = rules.getItemBreakChance(mode);
+        // access order, so the least recently used tree is the one dropped
+        trees = new LinkedHashMap<>(cacheSize * 2, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Long, Tree> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        heap = new NodeHeap();
+    }
+
+    /**
+     * Plans over the towns within a square around the given town, with every searched town marked,
+     * including those searched by other hunters in a shared world.
+     *
+     * @param world The world the towns are in.
+     * @param x The east-west coordinate of the middle town.
+     * @param y The north-south coordinate of the middle town.
+     * @param radius How many towns the square reaches out from the middle in each direction.
+     * @param mode The index of the mode of the game.
+     * @return The new planner.
+     */
+    public static RoutePlanner around(World world, int x, int y, int radius, int mode) {
+        int side = 2 * radius + 1;
+        RoutePlanner planner = new RoutePlanner(x - radius, y - radius, side, side,
+                world.terrainsIn(x - radius, y - radius, side, side), world.getRules(), mode, DEFAULT_CACHE_SIZE);
+        world.markSearched(planner, x - radius, y - radius, side, side);
+        return planner;
+    }
+
+    /**
+     * @return true if the town is on the planner's map.
+     */
+    public boolean contains(int x, int y) {
+        return x >= minX && x < minX + width && y >= minY && y < minY + height;
+    }
+
+    /**
+     * Marks a town as searched, so it is no longer a destination. Cached trees are still good.
+     */
+    public void markSearched(int x, int y) {
+        if (contains(x, y)) {
+            searched.set(node(x, y));
+        }
+    }
+
+    /**
+     * Finds the cheapest route to a town that hasn't been searched yet.
+     *
+     * @param x The east-west coordinate of the starting town.
+     * @param y The north-south coordinate of the starting town.
+     * @param kitMask The hunter's kit, as a mask of {@link Item#bit()} values.
+     * @return The route, or null if every town on the map has been searched.
+     */
+    public Route toNearestUnsearched(int x, int y, int kitMask) {
+        Tree tree = tree(node(x, y), kitMask);
+        int best = NO_PARENT;
+        for (int node = searched.nextClearBit(0); node < width * height; node = searched.nextClearBit(node + 1)) {
+            if (best == NO_PARENT || tree.cost[node] < tree.cost[best]) {
+                best = node;
+            }
+        }
+        return best == NO_PARENT ? null : routeTo(best, tree.cost, tree.parent);
+    }
+
+    /**
+     * Finds the cheapest route between two towns, from a cached tree if there is one and with A* otherwise.
+     *
+     * @param fromX The east-west coordinate of the starting town.
+     * @param fromY The north-south coordinate of the starting town.
+     * @param toX The east-west coordinate of the town to get to.
+     * @param toY The north-south coordinate of the town to get to.
+     * @param kitMask The hunter's kit, as a mask of {@link Item#bit()} values.
+     * @return The route.
+     */
+    public Route route(int fromX, int fromY, int toX, int toY, int kitMask) {
+        int source = node(fromX, fromY);
+        int target = node(toX, toY);
+        Tree tree = cachedTree(source, kitMask);
+        if (tree != null) {
+            return routeTo(target, tree.cost, tree.parent);
+        }
+
+        double[] costs = crossingCosts(kitMask);
+        double cheapest = Double.MAX_VALUE;
+        for (double cost : costs) {
+            cheapest = Math.min(cheapest, cost);
+        }
+        if (scratchCost == null) {
+            scratchCost = new double[width * height];
+            scratchParent = new int[width * height];
+            scratchClosed = new BitSet(width * height);
+        }
+        Arrays.fill(scratchCost, Double.MAX_VALUE);
+        scratchClosed.clear();
+        int targetX = target % width;
+        int targetY = target / width;
+
+        heap.clear();
+        scratchCost[source] = 0;
+        scratchParent[source] = NO_PARENT;
+        heap.push(0, source);
+        while (!heap.isEmpty()) {
+            int node = heap.pop();
+            if (node == target) {
+                break;
+            }
+            if (scratchClosed.get(node)) {
+                continue;
+            }
+            scratchClosed.set(node);
+            double next = scratchCost[node] + costs[terrains[node]];
+            int nodeX = node % width;
+            int nodeY = node / width;
+            for (int i = 0; i < 4; i++) {
+                int neighbour = neighbour(node, nodeX, nodeY, i);
+                if (neighbour != NO_PARENT && next < scratchCost[neighbour]) {
+                    scratchCost[neighbour] = next;
+                    scratchParent[neighbour] = node;
+                    int distance = Math.abs(targetX - neighbour % width) + Math.abs(targetY - neighbour / width);
+                    heap.push(next + distance * cheapest, neighbour);
+                }
+            }
+        }
+        return routeTo(target, scratchCost, scratchParent);
+    }
+
+    /**
+     * @param kitMask The hunter's kit, as a mask of {@link Item#bit()} values.
+     * @return The expected cost of leaving a town of each terrain with that kit, including the cost per move.
+     */
+    double[] crossingCosts(int kitMask) {
+        double[] costs = new double[terrainTypes.length];
+        for (int i = 0; i < costs.length; i++) {
+            Terrain terrain = terrainTypes[i];
+            if (terrain.isCrossableWithSword() && (kitMask & Item.SWORD.bit()) != 0) {
+                costs[i] = STEP_COST;
+            } else if ((kitMask & terrain.getItem().bit()) != 0) {
+                costs[i] = breakChance * prices[i] + STEP_COST;
+            } else {
+                costs[i] = prices[i] + breakChance * prices[i] + STEP_COST;
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * @return How many shortest-path trees have been built, as opposed to found in the cache.
+     */
+    int getTreesBuilt() {
+        return treesBuilt;
+    }
+
+    /**
+     * Finds the tree from a town for a kit, reusing a cached tree for another kit when that is still the tree of
+     * cheapest routes, and building it otherwise.
+     */
+    private Tree tree(int source, int kitMask) {
+        Tree tree = cachedTree(source, kitMask);
+        if (tree == null) {
+            tree = dijkstra(source, kitMask);
+            trees.put(treeKey(source, kitMask), tree);
+        }
+        return tree;
+    }
+
+    private Tree cachedTree(int source, int kitMask) {
+        Tree tree = trees.get(treeKey(source, kitMask));
+        if (tree != null) {
+            return tree;
+        }
+        double[] costs = crossingCosts(kitMask);
+        for (Tree other : trees.values()) {
+            if (other.source == source && stillCheapest(other, costs)) {
+                trees.put(treeKey(source, kitMask), other);
+                return other;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A tree stays the tree of cheapest routes when the terrains its routes cross cost the same, so that
+     * its routes cost what they did, and no terrain on the map got cheaper, so that no other route did.
+     *
+     * @return true if the tree is still good with the new crossing costs.
+     */
+    private boolean stillCheapest(Tree tree, double[] newCosts) {
+        int changed = 0;
+        int cheaper = 0;
+        for (int i = 0; i < newCosts.length; i++) {
+            if (newCosts[i] != tree.costs[i]) {
+                changed |= 1 << i;
+            }
+            if (newCosts[i] < tree.costs[i]) {
+                cheaper |= 1 << i;
+            }
+        }
+        return (tree.terrainsCrossed & changed) == 0 && (mapTerrains & cheaper) == 0;
+    }
+
+    /**
+     * Builds the tree of cheapest routes from a town to every town on the map.
+     */
+    private Tree dijkstra(int source, int kitMask) {
+        double[] costs = crossingCosts(kitMask);
+        double[] cost = new double[width * height];
+        int[] parent = new int[width * height];
+        Arrays.fill(cost, Double.MAX_VALUE);
+        BitSet settled = new BitSet(width * height);
+        treesBuilt++;
+
+        heap.clear();
+        cost[source] = 0;
+        parent[source] = NO_PARENT;
+        heap.push(0, source);
+        while (!heap.isEmpty()) {
+            int node = heap.pop();
+            if (settled.get(node)) {
+                continue;
+            }
+            settled.set(node);
+            double next = cost[node] + costs[terrains[node]];
+            int nodeX = node % width;
+            int nodeY = node / width;
+            for (int i = 0; i < 4; i++) {
+                int neighbour = neighbour(node, nodeX, nodeY, i);
+                if (neighbour != NO_PARENT && next < cost[neighbour]) {
+                    cost[neighbour] = next;
+                    parent[neighbour] = node;
+                    heap.push(next, neighbour);
+                }
+            }
+        }
+        // only the towns some route leaves count, which every town is a parent of but the dead ends
+        int terrainsCrossed = 0;
+        for (int node = 0; node < parent.length; node++) {
+            if (parent[node] != NO_PARENT) {
+                terrainsCrossed |= 1 << terrains[parent[node]];
+            }
+        }
+        return new Tree(source, costs, terrainsCrossed, cost, parent);
+    }
+
+    /**
+     * @return The neighbour to the north, south, east or west, or NO_PARENT off the edge of the map.
+     */
+    private int neighbour(int node, int nodeX, int nodeY, int direction) {
+        switch (direction) {
+            case 0:
+                return nodeY + 1 < height ? node + width : NO_PARENT;
+            case 1:
+                return nodeY > 0 ? node - width : NO_PARENT;
+            case 2:
+                return nodeX + 1 < width ? node + 1 : NO_PARENT;
+            default:
+                return nodeX > 0 ? node - 1 : NO_PARENT;
+        }
+    }
+
+    /**
+     * Follows the parents back from a town to build the route to it.
+     */
+    private Route routeTo(int target, double[] cost, int[] parent) {
+        StringBuilder directions = new StringBuilder();
+        for (int node = target; parent[node] != NO_PARENT; node = parent[node]) {
+            int from = parent[node];
+            if (node == from + width) {
+                directions.append('n');
+            } else if (node == from - width) {
+                directions.append('s');
+            } else if (node == from + 1) {
+                directions.append('e');
+            } else {
+                directions.append('w');
+            }
+        }
+        directions.reverse();
+        double gold = cost[target] - directions.length() * STEP_COST;
+        return new Route(minX + target % width, minY + target / width, directions.toString(), Math.max(0, gold));
+    }
+
+    private int node(int x, int y) {
+        if (!contains(x, y)) {
+            throw new IllegalArgumentException("(" + x + ", " + y + ") is off the map");
+        }
+        return (y - minY) * width + (x - minX);
+    }
+
+    private static long treeKey(int source, int kitMask) {
+        return ((long) source << 32) | (kitMask & 0xffffffffL);
+    }
+
+    /**
+     * Checks that a tree is kept when the kit changes in a way its routes don't care about, and rebuilt when
+     * they do: a three-town row whose last town is a dead end, so its terrain is never crossed.
+     *
+     * @return How many checks failed.
+     */
+    static int checkReuse(Ruleset rules) {
+        int crossed = 0;
+        int deadEnd = rules.getTerrainCount() - 1;
+        int crossedItem = rules.getTerrain(crossed).getItem().bit();
+        int deadEndItem = rules.getTerrain(deadEnd).getItem().bit();
+        RoutePlanner planner = new RoutePlanner(0, 0, 3, 1, new byte[] {(byte) crossed, (byte) crossed, (byte) deadEnd},
+                rules, 0, DEFAULT_CACHE_SIZE);
+        int failures = 0;
+        planner.toNearestUnsearched(0, 0, crossedItem | deadEndItem);
+        // selling the dead end's item makes only its terrain dearer
+        planner.toNearestUnsearched(0, 0, crossedItem);
+        failures += report("a dearer terrain no route crosses keeps the tree", planner.getTreesBuilt() == 1);
+        // selling the item the routes need makes them dearer
+        planner.toNearestUnsearched(0, 0, 0);
+        failures += report("a dearer terrain the routes cross rebuilds the tree", planner.getTreesBuilt() == 2);
+        // buying the dead end's item back makes a terrain on the map cheaper, which could open a cheaper route
+        planner.toNearestUnsearched(0, 0, deadEndItem);
+        failures += report("a cheaper terrain on the map rebuilds the tree", planner.getTreesBuilt() == 3);
+        return failures;
+    }
+
+    /**
+     * Checks the trees and the A* routes against the costs a brute-force search finds, on random maps big
+     * enough that routes differing by one move's cost would tie if the costs were rounded.
+     *
+     * @return How many checks failed.
+     */
+    static int checkCosts(Ruleset rules, int maps, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int side = 2 * DEFAULT_RADIUS + 1;
+        int wrongTrees = 0;
+        int wrongRoutes = 0;
+        for (int map = 0; map < maps; map++) {
+            byte[] terrains = new byte[side * side];
+            for (int i = 0; i < terrains.length; i++) {
+                terrains[i] = (byte) random.nextInt(rules.getTerrainCount());
+            }
+            int kitMask = random.nextInt(1 << Item.values().length);
+            RoutePlanner planner = new RoutePlanner(0, 0, side, side, terrains, rules, random.nextInt(TreasureHunter.MODES.length), 1);
+            int source = random.nextInt(terrains.length);
+            double[] expected = planner.bruteForce(source, kitMask);
+            int target = random.nextInt(terrains.length);
+            Route route = planner.route(source % side, source / side, target % side, target / side, kitMask);
+            if (Math.abs(route.getGold() + route.getDirections().length() * STEP_COST - expected[target]) > 1e-9) {
+                wrongRoutes++;
+            }
+            double[] cost = planner.tree(source, kitMask).cost;
+            for (int node = 0; node < terrains.length; node++) {
+                if (Math.abs(cost[node] - expected[node]) > 1e-9) {
+                    wrongTrees++;
+                    break;
+                }
+            }
+        }
+        return report("the trees of " + maps + " random maps are the cheapest (" + wrongTrees + " wrong)", wrongTrees == 0)
+                + report("the A* routes of " + maps + " random maps are the cheapest (" + wrongRoutes + " wrong)", wrongRoutes == 0);
+    }
+
+    /**
+     * Works out the cheapest cost of reaching every town by relaxing every link until nothing changes.
+     */
+    private double[] bruteForce(int source, int kitMask) {
+        double[] costs = crossingCosts(kitMask);
+        double[] cost = new double[width * height];
+        Arrays.fill(cost, Double.MAX_VALUE);
+        cost[source] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int node = 0; node < cost.length; node++) {
+                if (cost[node] == Double.MAX_VALUE) {
+                    continue;
+                }
+                double next = cost[node] + costs[terrains[node]];
+                for (int i = 0; i < 4; i++) {
+                    int neighbour = neighbour(node, node % width, node / width, i);
+                    if (neighbour != NO_PARENT && next < cost[neighbour]) {
+                        cost[neighbour] = next;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return cost;
+    }
+
+    private static int report(String check, boolean passed) {
+        System.out.println((passed ? "ok   " : "FAIL ") + check);
+        return passed ? 0 : 1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean check = false;
+        int maps = 20;
+        long seed = new SplittableRandom().nextLong();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--check")) {
+                check = true;
+            } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--rules") && i + 1 < args.length) {
+                Ruleset.install(Ruleset.load(Path.of(args[++i])));
+            } else {
+                maps = Integer.parseInt(args[i]);
+            }
+        }
+        if (!check) {
+            System.out.println("Usage: java RoutePlanner --check [maps] [--seed n] [--rules file]");
+            return;
+        }
+        Ruleset rules = Ruleset.current();
+        int failures = checkReuse(rules) + checkCosts(rules, maps, seed);
+        System.out.println("Failed: " + failures + ", seed: " + seed);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * A way from one town to another.
+     */
+    public static class Route {
+        // instance variables
+        private final int x;
+        private final int y;
+        private final String directions;
+        private final double gold;
+
+        Route(int x, int y, String directions, double gold) {
+            this.x = x;
+            this.y = y;
+            this.directions = directions;
+            this.gold = gold;
+        }
+
+        // accessors
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        /**
+         * @return One letter per move: n, s, e or w.
+         */
+        public String getDirections() {
+            return directions;
+        }
+
+        /**
+         * @return The gold the route is expected to cost in items bought and broken.
+         */
+        public double getGold() {
+            return gold;
+        }
+
+        public String toString() {
+            if (directions.isEmpty()) {
+                return "You're already there.";
+            }
+            String moves = directions.length() == 1 ? "move" : "moves";
+            return "Go " + directions.toUpperCase() + String.format(" (%d %s, about %.1f gold)", directions.length(), moves, gold);
+        }
+    }
+
+    /**
+     * The cheapest routes from one town to every other, for one set of crossing costs.
+     */
+    private static class Tree {
+        private final int source;
+        private final double[] costs;
+        // a mask of the terrains of every town a route in the tree leaves
+        private final int terrainsCrossed;
+        private final double[] cost;
+        private final int[] parent;
+
+        Tree(int source, double[] costs, int terrainsCrossed, double[] cost, int[] parent) {
+            this.source = source;
+            this.costs = costs;
+            this.terrainsCrossed = terrainsCrossed;
+            this.cost = cost;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * A binary min-heap of towns keyed by their costs, kept in parallel arrays so that nothing is boxed.
+     */
+    private static class NodeHeap {
+        private double[] keys = new double[1024];
+        private int[] nodes = new int[1024];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(double cost, int node) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0 && keys[(i - 1) / 2] > cost) {
+                keys[i] = keys[(i - 1) / 2];
+                nodes[i] = nodes[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            keys[i] = cost;
+            nodes[i] = node;
+        }
+
+        int pop() {
+            int node = nodes[0];
+            double lastKey = keys[--size];
+            int lastNode = nodes[size];
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= lastKey) {
+                    break;
+                }
+                keys[i] = keys[child];
+                nodes[i] = nodes[child];
+                i = child;
+            }
+            keys[i] = lastKey;
+            nodes[i] = lastNode;
+            return node;
+        }
+    }
+}
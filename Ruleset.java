@@ -0,0 +1,349 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The Ruleset class holds every number the game is tuned with: item costs, what each mode hands out,
+ * the odds of brawls, digging and breaking items, and the terrains and treasures towns are built from.<p>
+ * Rules are written as a properties file (see rules.properties for every key and its default) and
+ * compiled into flat arrays when they are loaded, so nothing is parsed or looked up by name while playing.
+ * Keys left out of the file keep their defaults, and unknown keys or values out of range are rejected.<p>
+ * A ruleset is never changed once built. The rules in use can be swapped for new ones at any time with
+ * {@link #install(Ruleset)}; each game keeps the rules it started with, or was loaded with, for every
+ * town it builds, so new rules only reach new games, and a game never sees half of an old ruleset and
+ * half of a new one, nor a town rebuilt differently from the first time it was built.
+ */
+
+public class Ruleset {
+    // constants
+    // per mode, in the order of TreasureHunter.MODES; normal mode's zeros are what the game has always done
+    private static final int[] STARTING_GOLD = {25, 15, 10, 15, 100};
+    private static final int[] ARRIVAL_GOLD = {20, 0, 10, 0, 100};
+    private static final double[] MARKDOWN = {1, 0.25, 0.25, 0.25, 0.25};
+    private static final double[] BRAWL_ODDS = {1.5, 0, 0.5, 0, 0};
+    private static final double[] ITEM_BREAK_CHANCE = {0, 0.5, 0.5, 0.5, 0.5};
+    private static final double[] TOUGHNESS = {0, 0, 0, 0, 0};
+    // a roll at or below the cutoff finds a fight
+    private static final double CALM_TROUBLE_CUTOFF = 0.33;
+    private static final double TOUGH_TROUBLE_CUTOFF = 0.66;
+    // brawls are fought over 1 to this much gold
+    private static final int MAX_BRAWL_GOLD = 10;
+    private static final double DIG_CHANCE = 0.5;
+    private static final int MAX_DIG_GOLD = 20;
+    private static final String TERRAINS = "Mountains:rope, Ocean:boat, Plains:horse, Desert:water, Jungle:machete:sword, Marsh:boots";
+    // the terrain index is saved in 4 bits of a journal record, and checked against this when a save is read
+    static final int MAX_TERRAINS = 16;
+
+    // the rules the game was written with
+    public static final Ruleset DEFAULT = compile(defaults());
+
+    private static volatile Ruleset current = DEFAULT;
+
+    // instance variables
+    private final ShopCatalog catalog;
+    private final int[] startingGold;
+    private final int[] arrivalGold;
+    private final double[] markdown;
+    private final double[] brawlOdds;
+    private final double[] itemBreakChance;
+    private final double[] toughness;
+    private final double calmTroubleCutoff;
+    private final double toughTroubleCutoff;
+    private final int maxBrawlGold;
+    private final double digChance;
+    private final int maxDigGold;
+    private final Terrain[] terrains;
+    private final AliasTable terrainTable;
+    private final AliasTable treasureTable;
+
+    private Ruleset(Properties rules, List<String> problems) {
+        int[] costs = new int[Item.values().length];
+        for (Item item : Item.values()) {
+            costs[item.ordinal()] = readInt(rules, "cost." + item.getItemName(), 0, Integer.MAX_VALUE, problems);
+        }
+        catalog = new ShopCatalog(costs);
+
+        int modes = TreasureHunter.MODES.length;
+        startingGold = new int[modes];
+        arrivalGold = new int[modes];
+        markdown = new double[modes];
+        brawlOdds = new double[modes];
+        itemBreakChance = new double[modes];
+        toughness = new double[modes];
+        for (int i = 0; i < modes; i++) {
+            String mode = TreasureHunter.MODES[i] + ".";
+            startingGold[i] = readInt(rules, mode + "startingGold", 0, Integer.MAX_VALUE, problems);
+            arrivalGold[i] = readInt(rules, mode + "arrivalGold", 0, Integer.MAX_VALUE, problems);
+            markdown[i] = readDouble(rules, mode + "markdown", 0, 1, problems);
+            brawlOdds[i] = readDouble(rules, mode + "brawlOdds", 0, Double.MAX_VALUE, problems);
+            itemBreakChance[i] = readDouble(rules, mode + "itemBreakChance", 0, 1, problems);
+            toughness[i] = readDouble(rules, mode + "toughness", 0, 1, problems);
+        }
+
+        calmTroubleCutoff = readDouble(rules, "trouble.calmCutoff", 0, 1, problems);
+        toughTroubleCutoff = readDouble(rules, "trouble.toughCutoff", 0, 1, problems);
+        maxBrawlGold = readInt(rules, "trouble.maxGold", 1, Integer.MAX_VALUE, problems);
+        digChance = readDouble(rules, "dig.chance", 0, 1, problems);
+        maxDigGold = readInt(rules, "dig.maxGold", 1, Integer.MAX_VALUE, problems);
+
+        terrains = readTerrains(rules.getProperty("terrains"), problems);
+        terrainTable = readWeights(rules, "terrain.weights", terrains.length, problems);
+        treasureTable = readWeights(rules, "treasure.weights", Treasure.values().length, problems);
+    }
+
+    /**
+     * @return The rules new games are played by.
+     */
+    public static Ruleset current() {
+        return current;
+    }
+
+    /**
+     * Makes new games use the given rules from now on. Games that already started keep their own.
+     *
+     * @param rules The rules to use.
+     */
+    public static void install(Ruleset rules) {
+        current = rules;
+    }
+
+    /**
+     * Reads and compiles a rules file.
+     *
+     * @param file The file; keys it leaves out keep their defaults.
+     * @return The compiled rules.
+     * @throws IOException if the file can't be read.
+     * @throws IllegalArgumentException listing everything wrong with the file, if anything is.
+     */
+    public static Ruleset load(Path file) throws IOException {
+        Properties defaults = defaults();
+        Properties rules = new Properties(defaults);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            rules.load(reader);
+        }
+        List<String> problems = new ArrayList<>();
+        for (String key : rules.stringPropertyNames()) {
+            if (defaults.getProperty(key) == null) {
+                problems.add("unknown key " + key);
+            }
+        }
+        Ruleset ruleset = new Ruleset(rules, problems);
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException(file + ": " + String.join("; ", problems));
+        }
+        return ruleset;
+    }
+
+    // accessors
+    public ShopCatalog getCatalog() {
+        return catalog;
+    }
+
+    public int getStartingGold(int mode) {
+        return startingGold[mode];
+    }
+
+    public int getArrivalGold(int mode) {
+        return arrivalGold[mode];
+    }
+
+    public double getMarkdown(int mode) {
+        return markdown[mode];
+    }
+
+    /**
+     * A brawl is won when a random number scaled by these odds beats a second random number.
+     *
+     * @param mode The index of the mode.
+     * @return What the first number is scaled by; 0 means a brawl can't be won without a sword.
+     */
+    public double getBrawlOdds(int mode) {
+        return brawlOdds[mode];
+    }
+
+    public double getItemBreakChance(int mode) {
+        return itemBreakChance[mode];
+    }
+
+    /**
+     * @param mode The index of the mode.
+     * @return The chance that a new town is a tough one.
+     */
+    public double getToughness(int mode) {
+        return toughness[mode];
+    }
+
+    public double getCalmTroubleCutoff() {
+        return calmTroubleCutoff;
+    }
+
+    public double getToughTroubleCutoff() {
+        return toughTroubleCutoff;
+    }
+
+    public int getMaxBrawlGold() {
+        return maxBrawlGold;
+    }
+
+    public double getDigChance() {
+        return digChance;
+    }
+
+    public int getMaxDigGold() {
+        return maxDigGold;
+    }
+
+    public int getTerrainCount() {
+        return terrains.length;
+    }
+
+    /**
+     * @param index The index of a terrain, in the order the rules list them.
+     * @return The terrain.
+     */
+    public Terrain getTerrain(int index) {
+        return terrains[index];
+    }
+
+    public AliasTable getTerrainTable() {
+        return terrainTable;
+    }
+
+    public AliasTable getTreasureTable() {
+        return treasureTable;
+    }
+
+    /**
+     * @return Every key with its default value.
+     */
+    private static Properties defaults() {
+        Properties rules = new Properties();
+        for (Item item : Item.values()) {
+            rules.setProperty("cost." + item.getItemName(), String.valueOf(ShopCatalog.DEFAULT.getBaseCost(item)));
+        }
+        for (int i = 0; i < TreasureHunter.MODES.length; i++) {
+            String mode = TreasureHunter.MODES[i] + ".";
+            rules.setProperty(mode + "startingGold", String.valueOf(STARTING_GOLD[i]));
+            rules.setProperty(mode + "arrivalGold", String.valueOf(ARRIVAL_GOLD[i]));
+            rules.setProperty(mode + "markdown", String.valueOf(MARKDOWN[i]));
+            rules.setProperty(mode + "brawlOdds", String.valueOf(BRAWL_ODDS[i]));
+            rules.setProperty(mode + "itemBreakChance", String.valueOf(ITEM_BREAK_CHANCE[i]));
+            rules.setProperty(mode + "toughness", String.valueOf(TOUGHNESS[i]));
+        }
+        rules.setProperty("trouble.calmCutoff", String.valueOf(CALM_TROUBLE_CUTOFF));
+        rules.setProperty("trouble.toughCutoff", String.valueOf(TOUGH_TROUBLE_CUTOFF));
+        rules.setProperty("trouble.maxGold", String.valueOf(MAX_BRAWL_GOLD));
+        rules.setProperty("dig.chance", String.valueOf(DIG_CHANCE));
+        rules.setProperty("dig.maxGold", String.valueOf(MAX_DIG_GOLD));
+        rules.setProperty("terrains", TERRAINS);
+        rules.setProperty("terrain.weights", "1, 1, 1, 1, 1, 1");
+        rules.setProperty("treasure.weights", "1, 1, 1, 1");
+        return rules;
+    }
+
+    /**
+     * @param rules Rules that are all known to be valid.
+     * @return The compiled rules.
+     */
+    private static Ruleset compile(Properties rules) {
+        List<String> problems = new ArrayList<>();
+        Ruleset ruleset = new Ruleset(rules, problems);
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException(String.join("; ", problems));
+        }
+        return ruleset;
+    }
+
+    private static int readInt(Properties rules, String key, int min, int max, List<String> problems) {
+        String value = rules.getProperty(key).trim();
+        try {
+            int number = Integer.parseInt(value);
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) { }
+        problems.add(key + " must be a whole number from " + min + (max == Integer.MAX_VALUE ? " up" : " to " + max) + ", not " + value);
+        return min;
+    }
+
+    private static double readDouble(Properties rules, String key, double min, double max, List<String> problems) {
+        String value = rules.getProperty(key).trim();
+        try {
+            double number = Double.parseDouble(value);
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) { }
+        problems.add(key + " must be a number from " + min + (max == Double.MAX_VALUE ? " up" : " to " + max) + ", not " + value);
+        return min;
+    }
+
+    /**
+     * Reads the list of terrains, each written as name:item, or name:item:sword when a sword crosses it too.
+     */
+    private static Terrain[] readTerrains(String value, List<String> problems) {
+        String[] entries = value.split(",");
+        if (entries.length > MAX_TERRAINS) {
+            problems.add("there can be at most " + MAX_TERRAINS + " terrains, not " + entries.length);
+        }
+        Terrain[] terrains = new Terrain[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            String[] parts = entries[i].trim().split(":");
+            Item item = parts.length >= 2 ? Item.fromName(parts[1].trim().toLowerCase()) : null;
+            boolean sword = parts.length == 3 && parts[2].trim().equals("sword");
+            if (parts.length < 2 || parts.length > 3 || parts[0].isBlank() || (parts.length == 3 && !sword)) {
+                problems.add("terrains must be written as name:item or name:item:sword, not " + entries[i].trim());
+                terrains[i] = new Terrain("Nowhere", "rope", false);
+            } else if (item == null || item == Item.SWORD) {
+                problems.add("terrain " + parts[0].trim() + " needs an item the shop sells, not " + parts[1].trim());
+                terrains[i] = new Terrain("Nowhere", "rope", false);
+            } else {
+                terrains[i] = new Terrain(parts[0].trim(), item.getItemName(), sword);
+            }
+        }
+        return terrains;
+    }
+
+    /**
+     * Reads a list of weights into an alias table.
+     *
+     * @param count How many weights there must be.
+     */
+    private static AliasTable readWeights(Properties rules, String key, int count, List<String> problems) {
+        String[] values = rules.getProperty(key).split(",");
+        double[] weights = new double[count];
+        double total = 0;
+        boolean valid = values.length == count;
+        if (!valid) {
+            problems.add(key + " needs " + count + " weights, not " + values.length);
+        } else {
+            for (int i = 0; i < count; i++) {
+                try {
+                    weights[i] = Double.parseDouble(values[i].trim());
+                } catch (NumberFormatException e) {
+                    weights[i] = -1;
+                }
+                if (!(weights[i] >= 0) || Double.isInfinite(weights[i])) {
+                    problems.add(key + " can only hold numbers 0 and up, not " + values[i].trim());
+                    weights[i] = 0;
+                    valid = false;
+                }
+                total += weights[i];
+            }
+            if (total == 0 && valid) {
+                problems.add(key + " needs at least one weight above 0");
+            }
+        }
+        if (total == 0) {
+            // something to build the table from, so the other problems can still be found
+            weights = new double[count];
+            weights[0] = 1;
+        }
+        return new AliasTable(weights);
+    }
+}
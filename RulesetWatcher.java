@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * The RulesetWatcher reloads a rules file whenever it changes on disk, while games are being played.<p>
+ * Each new version is compiled in full on the watcher's own thread and only then installed with
+ * {@link Ruleset#install(Ruleset)}, so games never wait on it and never see a half-loaded ruleset.
+ * A version with mistakes in it is reported and the rules in use are kept.
+ */
+
+public class RulesetWatcher implements Runnable {
+    // instance variables
+    private Path file;
+    private WatchService watcher;
+
+    private RulesetWatcher(Path file, WatchService watcher) {
+        this.file = file;
+        this.watcher = watcher;
+    }
+
+    /**
+     * Loads the rules file, installs it, and keeps reloading it on a daemon thread whenever it changes.
+     *
+     * @param file The rules file.
+     * @throws IOException if the file can't be read or watched.
+     * @throws IllegalArgumentException if the file has mistakes in it to begin with.
+     */
+    public static void start(Path file) throws IOException {
+        file = file.toAbsolutePath();
+        Ruleset.install(Ruleset.load(file));
+        WatchService watcher = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(new RulesetWatcher(file, watcher), "rules-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // nothing is being played any more
+        }
+    }
+
+    private void reload() {
+        try {
+            Ruleset.install(Ruleset.load(file));
+            System.err.println("Reloaded the rules from " + file);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Kept the old rules: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The SharedWorld is a map of towns that many hunters roam at once, racing each other for the gold and treasure.<p>
+ * Every hunter still has a {@link World} and {@link Town}s of their own, built from the shared world's seed, so
+ * they all see the same terrain and treasure in each town while keeping their own news and dice. What they
+ * share is one {@link Spot} per town: whether its gold has been dug up and its treasure found, and how many
+ * hunters are in it. A spot is claimed with a compare-and-set, so exactly one hunter wins each one, and the
+ * spots are kept in a {@link ConcurrentHashMap}, so hunters in different towns never hold each other up and
+ * thousands of hunters in one town only ever touch that town's two counters.
+ */
+
+public class SharedWorld {
+    // constants
+    static final int DUG = World.DUG;
+    static final int SEARCHED = World.SEARCHED;
+
+    // instance variables
+    private long worldSeed;
+    private ConcurrentHashMap<Long, Spot> spots;
+
+    /**
+     * @param worldSeed The seed every town's layout is derived from.
+     */
+    public SharedWorld(long worldSeed) {
+        this.worldSeed = worldSeed;
+        spots = new ConcurrentHashMap<>();
+    }
+
+    public long getWorldSeed() {
+        return worldSeed;
+    }
+
+    /**
+     * @param key The town's coordinates, packed by {@link World#key(int, int)}.
+     * @return The town's shared state, made the first time any hunter comes to it.
+     */
+    Spot spotAt(long key) {
+        Spot spot = spots.get(key);
+        if (spot == null) {
+            Spot fresh = new Spot();
+            spot = spots.putIfAbsent(key, fresh);
+            if (spot == null) {
+                spot = fresh;
+            }
+        }
+        return spot;
+    }
+
+    /**
+     * @param key The town's coordinates, packed by {@link World#key(int, int)}.
+     * @param flag {@link #DUG} or {@link #SEARCHED}.
+     * @return true if some hunter has set the flag, without making the town's spot if nobody has been there.
+     */
+    boolean isClaimed(long key, int flag) {
+        Spot spot = spots.get(key);
+        return spot != null && spot.isClaimed(flag);
+    }
+
+    /**
+     * What every hunter's copy of a town shares: its claimed spots and its head count.
+     * A town that isn't in a shared world keeps its own flags instead, and has no spot.
+     */
+    static class Spot {
+        private final AtomicInteger flags = new AtomicInteger();
+        private final AtomicInteger hunters = new AtomicInteger();
+
+        /**
+         * @return true if the flag is set.
+         */
+        boolean isClaimed(int flag) {
+            return (flags.get() & flag) != 0;
+        }
+
+        /**
+         * Sets a flag if nobody has yet.
+         *
+         * @param flag {@link #DUG} or {@link #SEARCHED}.
+         * @return true for the one caller that set it.
+         */
+        boolean claim(int flag) {
+            int old = flags.get();
+            while ((old & flag) == 0) {
+                if (flags.compareAndSet(old, old | flag)) {
+                    return true;
+                }
+                old = flags.get();
+            }
+            return false;
+        }
+
+        /**
+         * @return How many hunters are in town, counting the one arriving.
+         */
+        int arrive() {
+            return hunters.incrementAndGet();
+        }
+
+        void leave() {
+            hunters.decrementAndGet();
+        }
+    }
+}
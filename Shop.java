@@ -1,39 +1,74 @@
-import java.awt.*;
-import java.util.Scanner;
+import java.util.SplittableRandom;
 
 /**
  * The Shop class controls the cost of the items in the Treasure Hunt game. <p>
  * The Shop class also acts as a go between for the Hunter's buyItem() method. <p>
+ * Prices come from a {@link ShopCatalog} and are compiled into tables, along with the shop's listings,
+ * so looking up a price is a single array read. A shop whose prices don't drift uses the tables the
+ * catalog compiled once; only a shop with drift compiles its own when it is built. <p>
  * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
  */
 
 public class Shop {
-    // constants
-    private static final int WATER_COST = 2;
-    private static final int ROPE_COST = 4;
-    private static final int MACHETE_COST = 6;
-    private static final int HORSE_COST = 12;
-    private static final int BOAT_COST = 20;
-    private static final int SHOVEL_COST = 8;
-    private static final int BOOTS_COST = 6;
-    private OutputWindow window;
-
-    // static variables
-    private static final Scanner SCANNER = new Scanner(System.in);
+    private GameWindow window;
 
     // instance variables
-    private double markdown;
+    private Ruleset rules;
     private Hunter customer;
+    private int[] buyPrices;
+    private int[] sellPrices;
+    private String listing;
+    private String samuraiListing;
+    private String freeListing;
 
     /**
      * The Shop constructor takes in a markdown value and leaves customer null until one enters the shop.
+     * The shop plays by whichever rules are installed when it is built, so a game builds its shops from the
+     * rules it is pinned to instead.
      *
      * @param markdown Percentage of markdown for selling items in decimal format.
      */
-    public Shop(double markdown, OutputWindow window) {
-        this.markdown = markdown;
+    public Shop(double markdown, GameWindow window) {
+        this(Ruleset.current(), markdown, 0, null, window);
+    }
+
+    /**
+     * Builds a shop for a mode from a set of rules. The town the shop is in plays by the same rules.
+     *
+     * @param rules The rules the shop's prices and its town's dice come from.
+     * @param mode The index of the mode of the game.
+     */
+    public Shop(Ruleset rules, int mode, GameWindow window) {
+        this(rules, rules.getMarkdown(mode), 0, null, window);
+    }
+
+    /**
+     * Builds a shop whose prices come from the catalog of the given rules, pushed up or down by the town's
+     * supply and demand.
+     *
+     * @param rules The rules the shop's catalog and its town's dice come from.
+     * @param markdown Percentage of markdown for selling items in decimal format.
+     * @param drift How far, as a fraction, each price may drift from the catalog; 0 for none.
+     * @param random The random source the town is laid out with; may be null when there is no drift.
+     */
+    public Shop(Ruleset rules, double markdown, double drift, SplittableRandom random, GameWindow window) {
+        this.rules = rules;
+        ShopCatalog catalog = rules.getCatalog();
         customer = null; // is set in the enter method
         this.window = window;
+
+        if (drift > 0) {
+            buyPrices = catalog.compileBuyPrices(drift, random);
+            sellPrices = ShopCatalog.compileSellPrices(buyPrices, markdown);
+            listing = ShopCatalog.renderListing(buyPrices, false);
+            samuraiListing = ShopCatalog.renderListing(buyPrices, true);
+        } else {
+            buyPrices = catalog.getBuyPrices();
+            sellPrices = catalog.getSellPrices(markdown);
+            listing = catalog.getListing(false);
+            samuraiListing = catalog.getListing(true);
+        }
+        freeListing = catalog.getFreeListing();
     }
 
     /**
@@ -41,55 +76,61 @@ public class Shop {
      *
      * @param hunter the Hunter entering the shop
      * @param buyOrSell String that determines if hunter is "B"uying or "S"elling
+     * @param input Where the hunter's answers come from.
      */
-    public void enter(Hunter hunter, String buyOrSell) {
+    public void enter(Hunter hunter, String buyOrSell, GameInput input) {
         customer = hunter;
 
         if (buyOrSell.equals("b")) {
-            if (!hunter.hasItemInKit("sword")) {
+            if (!hunter.hasItem(Item.SWORD)) {
                 window.clear();
-                window.addTextToWindow("Welcome to the shop! We have the finest wares in town.", Color.blue);
-                window.addTextToWindow("\nCurrently we have the following items: ", Color.blue);
-                window.addTextToWindow("\n" + inventory(), Color.blue);
-                window.addTextToWindow("\nWhat're you lookin' to buy? ", Color.blue);
-                String item = SCANNER.nextLine().toLowerCase();
+                window.addTextToWindow("Welcome to the shop! We have the finest wares in town.", TextColor.BLUE);
+                window.addTextToWindow("\nCurrently we have the following items: ", TextColor.BLUE);
+                window.addTextToWindow("\n" + inventory(), TextColor.BLUE);
+                window.addTextToWindow("\nWhat're you lookin' to buy? ", TextColor.BLUE);
+                window.flush();
+                String item = input.nextLine().toLowerCase();
                 int cost = checkMarketPrice(item, true);
                 if (cost == 0 && !item.equals("sword")) {
-                    window.addTextToWindow("\nWe ain't got none of those.", Color.red);
+                    window.addTextToWindow("\nWe ain't got none of those.", TextColor.RED);
                 } else {
-                    window.addTextToWindow("\nIt'll cost you " + cost + " gold. Buy it (y/n)? ", Color.green);
-                    String option = SCANNER.nextLine().toLowerCase();
+                    window.addTextToWindow("\nIt'll cost you " + cost + " gold. Buy it (y/n)? ", TextColor.GREEN);
+                    window.flush();
+                    String option = input.nextLine().toLowerCase();
 
                     if (option.equals("y")) {
                         buyItem(item);
                     }
                 }
             } else {
-                window.addTextToWindow("\nReally? You're really gonna come into my shop and threaten me with my own sword?", Color.red);
-                window.addTextToWindow("\nWhatever, feel free to take anything.", Color.green);
-                window.addTextToWindow("\n" + freeShop(), Color.green);
-                window.addTextToWindow("\nChoose an item to rob: ", Color.red);
-                String item = SCANNER.nextLine().toLowerCase();
-                window.addTextToWindow("\nThe shopkeeper gave you your item for free with a rather vicious glare!", Color.green);
+                window.addTextToWindow("\nReally? You're really gonna come into my shop and threaten me with my own sword?", TextColor.RED);
+                window.addTextToWindow("\nWhatever, feel free to take anything.", TextColor.GREEN);
+                window.addTextToWindow("\n" + freeShop(), TextColor.GREEN);
+                window.addTextToWindow("\nChoose an item to rob: ", TextColor.RED);
+                window.flush();
+                String item = input.nextLine().toLowerCase();
+                window.addTextToWindow("\nThe shopkeeper gave you your item for free with a rather vicious glare!", TextColor.GREEN);
                 hunter.addItem(item);
             }
         } else {
-            window.addTextToWindow("\nWhat're you lookin' to sell? ", Color.pink);
-            window.addTextToWindow("\nYou currently have the following items: " + customer.getInventory(), Color.pink);
-            String item = SCANNER.nextLine().toLowerCase();
+            window.addTextToWindow("\nWhat're you lookin' to sell? ", TextColor.PINK);
+            window.addTextToWindow("\nYou currently have the following items: " + customer.getInventory(), TextColor.PINK);
+            window.flush();
+            String item = input.nextLine().toLowerCase();
             int cost = checkMarketPrice(item, false);
             if (cost == 0) {
-                window.addTextToWindow("\nWe don't want none of those.", Color.red);
+                window.addTextToWindow("\nWe don't want none of those.", TextColor.RED);
             } else {
-                window.addTextToWindow("\nIt'll get you " + cost + " gold. Sell it (y/n)? ", Color.green);
-                String option = SCANNER.nextLine().toLowerCase();
+                window.addTextToWindow("\nIt'll get you " + cost + " gold. Sell it (y/n)? ", TextColor.GREEN);
+                window.flush();
+                String option = input.nextLine().toLowerCase();
 
                 if (option.equals("y")) {
                     sellItem(item);
                 }
             }
         }
-        window.addTextToWindow("You left the shop", Color.green);
+        window.addTextToWindow("You left the shop", TextColor.GREEN);
     }
 
     /**
@@ -99,29 +140,21 @@ public class Shop {
      * @return the string representing the shop's items available for purchase and their prices.
      */
     public String inventory() {
-        String str = "Water: " + WATER_COST + " gold\n";
-        str += "Rope: " + ROPE_COST + " gold\n";
-        str += "Machete: " + MACHETE_COST + " gold\n";
-        str += "Horse: " + HORSE_COST + " gold\n";
-        str += "Boat: " + BOAT_COST + " gold\n";
-        str += "Shovel: " + SHOVEL_COST + " gold\n";
-        str += "Boots: " + BOOTS_COST + " gold\n";
-        if (Hunter.isSamurai){
-            str += "Sword" + ": 0 gold";
+        if (customer != null && customer.isSamurai()){
+            return samuraiListing;
         }
-        return str;
+        return listing;
     }
 
     public String freeShop(){
-        String str = "Water: 0 gold\n";
-        str += "Rope: 0 gold\n";
-        str += "Machete: 0 gold\n";
-        str += "Horse: 0 gold\n";
-        str += "Boat:  0 gold\n";
-        str += "Shovel: 0 gold\n";
-        str += "Boots: 0 gold\n";
-
-        return str;
+        return freeListing;
+    }
+
+    /**
+     * @return The rules the shop was built with.
+     */
+    Ruleset getRules() {
+        return rules;
     }
 
     /**
@@ -132,12 +165,39 @@ public class Shop {
     public void buyItem(String item) {
         int costOfItem = checkMarketPrice(item, true);
         if (customer.buyItem(item, costOfItem)) {
-            window.addTextToWindow("Ye' got yerself a " + item + ". Come again soon.", Color.green);
+            window.addTextToWindow("Ye' got yerself a " + item + ". Come again soon.", TextColor.GREEN);
         } else {
-            window.addTextToWindow("Hmm, either you don't have enough gold or you've already got one of those!", Color.red);
+            window.addTextToWindow("Hmm, either you don't have enough gold or you've already got one of those!", TextColor.RED);
         }
     }
 
+    /**
+     * Lets a hunter buy an item without going through the shop prompts.
+     * A hunter carrying a sword robs the shop, just like in {@link #enter(Hunter, String, GameInput)}.
+     *
+     * @param hunter The Hunter buying the item.
+     * @param item The item being bought.
+     */
+    public void buyItem(Hunter hunter, String item) {
+        customer = hunter;
+        if (hunter.hasItem(Item.SWORD)) {
+            hunter.addItem(item);
+        } else {
+            buyItem(item);
+        }
+    }
+
+    /**
+     * Lets a hunter sell an item without going through the shop prompts.
+     *
+     * @param hunter The Hunter selling the item.
+     * @param item The item being sold.
+     */
+    public void sellItem(Hunter hunter, String item) {
+        customer = hunter;
+        sellItem(item);
+    }
+
     /**
      * A pathway method that lets the Hunter sell an item.
      *
@@ -146,9 +206,9 @@ public class Shop {
     public void sellItem(String item) {
         int buyBackPrice = checkMarketPrice(item, false);
         if (customer.sellItem(item, buyBackPrice)) {
-            window.addTextToWindow("Pleasure doin' business with you.", Color.green);
+            window.addTextToWindow("Pleasure doin' business with you.", TextColor.GREEN);
         } else {
-            window.addTextToWindow("Stop stringin' me along!", Color.red);
+            window.addTextToWindow("Stop stringin' me along!", TextColor.RED);
         }
     }
 
@@ -168,39 +228,32 @@ public class Shop {
     }
 
     /**
-     * Checks the item entered against the costs listed in the static variables.
+     * Looks the item entered up in the shop's price table.
      *
      * @param item The item being checked for cost.
      * @return The cost of the item or 0 if the item is not found.
      */
     public int getCostOfItem(String item) {
-        if (item.equals("water")) {
-            return WATER_COST;
-        } else if (item.equals("rope")) {
-            return ROPE_COST;
-        } else if (item.equals("machete")) {
-            return MACHETE_COST;
-        } else if (item.equals("horse")) {
-            return HORSE_COST;
-        } else if (item.equals("boat")) {
-            return BOAT_COST;
-        } else if (item.equals("shovel")) {
-            return SHOVEL_COST;
-        } else if (item.equals("boots")){
-            return BOOTS_COST;
-        } else {
-            return 0;
-        }
+        Item shopItem = Item.fromName(item);
+        return shopItem == null ? 0 : buyPrices[shopItem.ordinal()];
+    }
+
+    /**
+     * @param item The item being checked for cost.
+     * @return The cost of the item.
+     */
+    public int getCostOfItem(Item item) {
+        return buyPrices[item.ordinal()];
     }
 
     /**
-     * Checks the cost of an item and applies the markdown.
+     * Looks up what the shop pays for an item, with the markdown already applied.
      *
      * @param item The item being sold.
      * @return The sell price of the item.
      */
     public int getBuyBackCost(String item) {
-        int cost = (int) (getCostOfItem(item) * markdown);
-        return cost;
+        Item shopItem = Item.fromName(item);
+        return shopItem == null ? 0 : sellPrices[shopItem.ordinal()];
     }
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The ShopCatalog class lists what the shops sell and what each item costs before any town's
+ * prices are applied.<p>
+ * A catalog is never changed once built. It compiles its own prices into tables and listings once,
+ * which every {@link Shop} without drift shares; a shop whose prices drift compiles its own when its
+ * town is created. Either way nothing about prices is worked out while shopping.
+ */
+
+public class ShopCatalog {
+    // constants
+    private static final int WATER_COST = 2;
+    private static final int ROPE_COST = 4;
+    private static final int MACHETE_COST = 6;
+    private static final int HORSE_COST = 12;
+    private static final int BOAT_COST = 20;
+    private static final int SHOVEL_COST = 8;
+    private static final int BOOTS_COST = 6;
+    // the sword is only handed out to samurai, for free
+    private static final int SWORD_COST = 0;
+
+    // the catalog every shop uses unless told otherwise
+    public static final ShopCatalog DEFAULT = new ShopCatalog(
+            WATER_COST, ROPE_COST, MACHETE_COST, HORSE_COST, BOAT_COST, SHOVEL_COST, BOOTS_COST, SWORD_COST);
+
+    // instance variables
+    private final int[] baseCosts;
+    // the tables and listings of a shop without drift, shared by every such shop and never written to
+    private final int[] buyPrices;
+    private final String listing;
+    private final String samuraiListing;
+    private final String freeListing;
+    // the sell prices for each markdown asked for so far, one per mode; replaced whole when one is added
+    private volatile SellPrices[] sellPrices;
+
+    /**
+     * @param baseCosts The cost of every {@link Item}, in the order the items are declared.
+     */
+    public ShopCatalog(int... baseCosts) {
+        if (baseCosts.length != Item.values().length) {
+            throw new IllegalArgumentException("Expected a cost for each of the " + Item.values().length + " items");
+        }
+        this.baseCosts = baseCosts.clone();
+        buyPrices = compileBuyPrices(0, null);
+        listing = renderListing(buyPrices, false);
+        samuraiListing = renderListing(buyPrices, true);
+        freeListing = renderListing(new int[buyPrices.length], false);
+        sellPrices = new SellPrices[0];
+    }
+
+    /**
+     * @param item An item.
+     * @return What the item costs before any town's prices are applied.
+     */
+    public int getBaseCost(Item item) {
+        return baseCosts[item.ordinal()];
+    }
+
+    /**
+     * @return The buying prices of a shop without drift, indexed by {@link Item#ordinal()}; not to be changed.
+     */
+    int[] getBuyPrices() {
+        return buyPrices;
+    }
+
+    /**
+     * Looks up the selling prices of a shop without drift, compiling them the first time a markdown is asked for.
+     *
+     * @param markdown The fraction of the buying price the shop pays for an item.
+     * @return The buy back price of every item, indexed by {@link Item#ordinal()}; not to be changed.
+     */
+    int[] getSellPrices(double markdown) {
+        for (SellPrices prices : sellPrices) {
+            if (prices.markdown == markdown) {
+                return prices.prices;
+            }
+        }
+        synchronized (this) {
+            SellPrices[] known = sellPrices;
+            for (SellPrices prices : known) {
+                if (prices.markdown == markdown) {
+                    return prices.prices;
+                }
+            }
+            SellPrices added = new SellPrices(markdown, compileSellPrices(buyPrices, markdown));
+            SellPrices[] grown = Arrays.copyOf(known, known.length + 1);
+            grown[known.length] = added;
+            sellPrices = grown;
+            return added.prices;
+        }
+    }
+
+    /**
+     * @param withSword Whether to list the sword as well.
+     * @return The listing of a shop without drift.
+     */
+    String getListing(boolean withSword) {
+        return withSword ? samuraiListing : listing;
+    }
+
+    /**
+     * @return The listing of a shop that gives everything away.
+     */
+    String getFreeListing() {
+        return freeListing;
+    }
+
+    /**
+     * Works out a town's buying prices.
+     *
+     * @param drift How far, as a fraction, supply and demand can push each price up or down; 0 for none.
+     * @param random The random source the town is laid out with; only used when there is drift.
+     * @return The price of every item, indexed by {@link Item#ordinal()}.
+     */
+    int[] compileBuyPrices(double drift, SplittableRandom random) {
+        int[] prices = baseCosts.clone();
+        if (drift > 0) {
+            for (int i = 0; i < prices.length; i++) {
+                if (prices[i] > 0) {
+                    double factor = 1 + drift * (2 * random.nextDouble() - 1);
+                    prices[i] = Math.max(1, (int) Math.round(prices[i] * factor));
+                }
+            }
+        }
+        return prices;
+    }
+
+    /**
+     * Works out a town's selling prices from its buying prices.
+     *
+     * @param buyPrices The town's buying prices.
+     * @param markdown The fraction of the buying price the shop pays for an item.
+     * @return The buy back price of every item, indexed by {@link Item#ordinal()}.
+     */
+    static int[] compileSellPrices(int[] buyPrices, double markdown) {
+        int[] prices = new int[buyPrices.length];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = (int) (buyPrices[i] * markdown);
+        }
+        return prices;
+    }
+
+    /**
+     * Renders the list of items for sale, one per line.
+     *
+     * @param prices The prices to show, indexed by {@link Item#ordinal()}.
+     * @param withSword Whether to list the sword as well.
+     * @return The listing.
+     */
+    static String renderListing(int[] prices, boolean withSword) {
+        StringBuilder str = new StringBuilder();
+        for (Item item : Item.values()) {
+            if (item == Item.SWORD) {
+                continue;
+            }
+            str.append(displayName(item)).append(": ").append(prices[item.ordinal()]).append(" gold\n");
+        }
+        if (withSword) {
+            str.append(displayName(Item.SWORD)).append(": ").append(prices[Item.SWORD.ordinal()]).append(" gold");
+        }
+        return str.toString();
+    }
+
+    /**
+     * The selling prices at one markdown.
+     */
+    private static class SellPrices {
+        private final double markdown;
+        private final int[] prices;
+
+        SellPrices(double markdown, int[] prices) {
+            this.markdown = markdown;
+            this.prices = prices;
+        }
+    }
+
+    private static String displayName(Item item) {
+        String name = item.getItemName();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
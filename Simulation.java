@@ -0,0 +1,169 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The Simulation class plays many games of Treasure Hunter without any UI.<p>
+ * Games are driven by a {@link Policy} instead of a person, and are split over a fork-join pool
+ * so that every core is kept busy. Every game gets its own random source seeded from the run's seed,
+ * so workers never contend on a shared generator and any game can be replayed on its own.<p>
+ * Several mode letters can be given at once, and the games are dealt out between those modes in turn,
+ * with the results broken down by mode. The best games of the run are kept on a {@link Leaderboard}.<p>
+ * Usage: java Simulation [games] [mode letters] [threads] [seed]
+ */
+
+public class Simulation {
+    // constants
+    static final int MAX_TURNS = 1000;
+    private static final int GAMES_PER_TASK = 1024;
+
+    // instance variables
+    private String[] modeChoices;
+    private Policy policy;
+    private long runSeed;
+    private Leaderboard leaderboard;
+
+    /**
+     * @param modeChoice The mode letters, as typed on the welcome screen; game n is played in the
+     *                   mode of letter n modulo the number of letters.
+     * @param policy The Policy that plays every game.
+     * @param runSeed The seed every game's seed is derived from.
+     */
+    public Simulation(String modeChoice, Policy policy, long runSeed) {
+        this.modeChoices = modeChoice.split("");
+        this.policy = policy;
+        this.runSeed = runSeed;
+        leaderboard = new Leaderboard(Leaderboard.DEFAULT_SIZE);
+    }
+
+    /**
+     * @return The best games played so far, with their seeds.
+     */
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Plays a batch of games on the given pool.
+     *
+     * @param games How many games to play.
+     * @param pool The pool to run the games on.
+     * @return The merged results of all the games.
+     */
+    public SimulationResult run(long games, ForkJoinPool pool) {
+        return run(0, games, pool);
+    }
+
+    /**
+     * Plays a range of the run's games on the given pool.
+     *
+     * @param from The number of the first game to play.
+     * @param to The number of the game to stop before.
+     * @param pool The pool to run the games on.
+     * @return The merged results of the games in the range.
+     */
+    public SimulationResult run(long from, long to, ForkJoinPool pool) {
+        return pool.invoke(new GameTask(from, to));
+    }
+
+    /**
+     * Plays one game of the run again.
+     *
+     * @param game The number of the game within the run.
+     * @return The outcome of just that game.
+     */
+    public SimulationResult replay(long game) {
+        SimulationResult result = new SimulationResult();
+        playGame(GameSeeds.forGame(runSeed, game), modeChoices[(int) (game % modeChoices.length)], result);
+        return result;
+    }
+
+    /**
+     * Plays one full game from the welcome screen until it is won, lost or runs out of turns.
+     *
+     * @param seed The seed of the game.
+     * @param modeChoice The mode letter, as typed on the welcome screen.
+     * @param result Where the outcome is recorded.
+     */
+    public void playGame(long seed, String modeChoice, SimulationResult result) {
+        SplittableRandom random = new SplittableRandom(seed);
+        // the whole game is played by the rules it started with, even if they are reloaded part way through
+        Ruleset rules = Ruleset.current();
+        Hunter hunter = new Hunter("simulated", 0);
+        String mode = TreasureHunter.chooseMode(hunter, modeChoice, rules);
+        Town town = TreasureHunter.newTown(hunter, mode, rules, HeadlessWindow.INSTANCE, random);
+
+        int turns = 0;
+        while (!hunter.isGameOver() && turns < MAX_TURNS) {
+            String choice = policy.chooseAction(hunter, town);
+            turns++;
+            if (choice.equals("b")) {
+                town.getShop().buyItem(hunter, policy.chooseItem(hunter, town, true));
+            } else if (choice.equals("s")) {
+                town.getShop().sellItem(hunter, policy.chooseItem(hunter, town, false));
+            } else if (choice.equals("m")) {
+                if (town.leaveTown()) {
+                    town = TreasureHunter.newTown(hunter, mode, rules, HeadlessWindow.INSTANCE, random);
+                }
+            } else if (choice.equals("l")) {
+                town.lookForTrouble();
+            } else if (choice.equals("d")) {
+                town.digForGold();
+            } else if (choice.equals("h")) {
+                hunter.addTreasure(town.searchTreasure());
+            } else if (choice.equals("x")) {
+                break;
+            }
+        }
+        result.record(mode, hunter, turns);
+        leaderboard.record(hunter, seed, TreasureHunter.modeIndex(mode), turns);
+    }
+
+    /**
+     * Splits a range of games in half until it is small enough to play on one thread.
+     */
+    @SuppressWarnings("serial")
+    private class GameTask extends RecursiveTask<SimulationResult> {
+        private long from;
+        private long to;
+
+        GameTask(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        protected SimulationResult compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                SimulationResult result = new SimulationResult();
+                for (long i = from; i < to; i++) {
+                    playGame(GameSeeds.forGame(runSeed, i), modeChoices[(int) (i % modeChoices.length)], result);
+                }
+                return result;
+            }
+            long mid = (from + to) >>> 1;
+            GameTask left = new GameTask(from, mid);
+            left.fork();
+            SimulationResult right = new GameTask(mid, to).compute();
+            return right.merge(left.join());
+        }
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        String modeChoice = args.length > 1 ? args[1].toLowerCase() : "n";
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : new SplittableRandom().nextLong();
+
+        Simulation simulation = new Simulation(modeChoice, new GreedyPolicy(), seed);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        SimulationResult result = simulation.run(games, pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.println(result);
+        System.out.println("\n" + simulation.getLeaderboard() + "\n");
+        System.out.println("Threads: " + threads + ", seed: " + seed);
+        System.out.println(String.format("Time: %.2f s (%.0f games/second)", seconds, games / seconds));
+    }
+}
@@ -0,0 +1,276 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The SimulationResult class adds up the outcomes of simulated games.<p>
+ * Each worker fills in its own result, and the results are merged once the workers are done.
+ * Turns to win and final gold are kept in {@link QuantileSketch}es, so a result takes the same small amount
+ * of memory however many games it covers. Every game is also added to a result of its own mode,
+ * so runs that mix modes can be broken down by mode.
+ */
+
+public class SimulationResult {
+    // instance variables
+    private long games;
+    private long wins;
+    private long losses;
+    private long quits;
+    private long turns;
+    private long brawlsWon;
+    private long brawlsLost;
+    private long itemsBroken;
+    private QuantileSketch turnsToWin;
+    private QuantileSketch finalGold;
+    // indexed like TreasureHunter.MODES, and only made for modes that were played
+    private SimulationResult[] byMode;
+
+    public SimulationResult() {
+        turnsToWin = new QuantileSketch();
+        finalGold = new QuantileSketch();
+    }
+
+    /**
+     * Records the outcome of one finished game.
+     *
+     * @param mode The mode the game was played in.
+     * @param hunter The Hunter at the end of the game.
+     * @param turnsPlayed How many menu choices were made.
+     */
+    public void record(String mode, Hunter hunter, int turnsPlayed) {
+        record(TreasureHunter.modeIndex(mode), hunter.hasWon(), hunter.isGameOver(), hunter.getGold(), turnsPlayed,
+                hunter.getBrawlsWon(), hunter.getBrawlsLost(), hunter.getItemsBroken());
+    }
+
+    /**
+     * Records the outcome of one finished game that wasn't played with a Hunter object.
+     *
+     * @param mode The index of the mode the game was played in.
+     * @param won Whether all three treasures were found.
+     * @param gameOver Whether the game was won or lost, rather than given up.
+     * @param gold The gold at the end of the game.
+     * @param turnsPlayed How many menu choices were made.
+     * @param brawlsWon How many brawls the hunter won.
+     * @param brawlsLost How many brawls the hunter lost.
+     * @param itemsBroken How many items broke.
+     */
+    void record(int mode, boolean won, boolean gameOver, int gold, int turnsPlayed, int brawlsWon, int brawlsLost, int itemsBroken) {
+        recordGame(won, gameOver, gold, turnsPlayed, brawlsWon, brawlsLost, itemsBroken);
+        if (byMode == null) {
+            byMode = new SimulationResult[TreasureHunter.MODES.length];
+        }
+        if (byMode[mode] == null) {
+            byMode[mode] = new SimulationResult();
+        }
+        byMode[mode].recordGame(won, gameOver, gold, turnsPlayed, brawlsWon, brawlsLost, itemsBroken);
+    }
+
+    /**
+     * Records the outcome of one finished game, without saying what mode it was.
+     *
+     * @param hunter The Hunter at the end of the game.
+     * @param turnsPlayed How many menu choices were made.
+     */
+    public void record(Hunter hunter, int turnsPlayed) {
+        recordGame(hunter.hasWon(), hunter.isGameOver(), hunter.getGold(), turnsPlayed,
+                hunter.getBrawlsWon(), hunter.getBrawlsLost(), hunter.getItemsBroken());
+    }
+
+    private void recordGame(boolean won, boolean gameOver, int gold, int turnsPlayed, int brawlsWon, int brawlsLost, int itemsBroken) {
+        games++;
+        turns += turnsPlayed;
+        if (won) {
+            wins++;
+            turnsToWin.record(turnsPlayed);
+        } else if (gameOver) {
+            losses++;
+        } else {
+            quits++;
+        }
+        this.brawlsWon += brawlsWon;
+        this.brawlsLost += brawlsLost;
+        this.itemsBroken += itemsBroken;
+        finalGold.record(gold);
+    }
+
+    /**
+     * Adds another result into this one.
+     *
+     * @param other The result to merge in.
+     * @return this result, to allow chaining.
+     */
+    public SimulationResult merge(SimulationResult other) {
+        games += other.games;
+        wins += other.wins;
+        losses += other.losses;
+        quits += other.quits;
+        turns += other.turns;
+        brawlsWon += other.brawlsWon;
+        brawlsLost += other.brawlsLost;
+        itemsBroken += other.itemsBroken;
+        turnsToWin.merge(other.turnsToWin);
+        finalGold.merge(other.finalGold);
+        if (other.byMode != null) {
+            if (byMode == null) {
+                byMode = new SimulationResult[other.byMode.length];
+            }
+            for (int i = 0; i < byMode.length; i++) {
+                if (other.byMode[i] != null) {
+                    if (byMode[i] == null) {
+                        byMode[i] = new SimulationResult();
+                    }
+                    byMode[i].merge(other.byMode[i]);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes the result so that {@link #readFrom(DataInput)} can rebuild it in another process.
+     *
+     * @param out Where the result is written.
+     * @throws IOException if it can't be written.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(games);
+        out.writeLong(wins);
+        out.writeLong(losses);
+        out.writeLong(quits);
+        out.writeLong(turns);
+        out.writeLong(brawlsWon);
+        out.writeLong(brawlsLost);
+        out.writeLong(itemsBroken);
+        turnsToWin.writeTo(out);
+        finalGold.writeTo(out);
+        // one bit for each mode that has a result of its own
+        int modes = 0;
+        for (int i = 0; byMode != null && i < byMode.length; i++) {
+            if (byMode[i] != null) {
+                modes |= 1 << i;
+            }
+        }
+        out.writeByte(modes);
+        for (int i = 0; byMode != null && i < byMode.length; i++) {
+            if (byMode[i] != null) {
+                byMode[i].writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * @param in Where a result was written by {@link #writeTo(DataOutput)}.
+     * @return The result.
+     * @throws IOException if it can't be read.
+     */
+    public static SimulationResult readFrom(DataInput in) throws IOException {
+        SimulationResult result = new SimulationResult();
+        result.games = in.readLong();
+        result.wins = in.readLong();
+        result.losses = in.readLong();
+        result.quits = in.readLong();
+        result.turns = in.readLong();
+        result.brawlsWon = in.readLong();
+        result.brawlsLost = in.readLong();
+        result.itemsBroken = in.readLong();
+        result.turnsToWin = QuantileSketch.readFrom(in);
+        result.finalGold = QuantileSketch.readFrom(in);
+        int modes = in.readUnsignedByte();
+        if (modes != 0) {
+            result.byMode = new SimulationResult[TreasureHunter.MODES.length];
+            for (int i = 0; i < result.byMode.length; i++) {
+                if ((modes & 1 << i) != 0) {
+                    result.byMode[i] = readFrom(in);
+                }
+            }
+        }
+        return result;
+    }
+
+    // accessors
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getLosses() {
+        return losses;
+    }
+
+    public long getQuits() {
+        return quits;
+    }
+
+    public long getBrawlsWon() {
+        return brawlsWon;
+    }
+
+    public long getBrawlsLost() {
+        return brawlsLost;
+    }
+
+    public long getItemsBroken() {
+        return itemsBroken;
+    }
+
+    public QuantileSketch getTurnsToWin() {
+        return turnsToWin;
+    }
+
+    public QuantileSketch getFinalGold() {
+        return finalGold;
+    }
+
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    public double getAverageTurnsToWin() {
+        return turnsToWin.getMean();
+    }
+
+    /**
+     * @param mode The name of a mode.
+     * @return The games played in that mode, or null if none were.
+     */
+    public SimulationResult getModeResult(String mode) {
+        int index = TreasureHunter.modeIndex(mode);
+        return byMode == null || index < 0 ? null : byMode[index];
+    }
+
+    /**
+     * @return A string representation of the results, followed by the results of each mode
+     * when more than one mode was played.
+     */
+    public String toString() {
+        String str = "Games: " + games;
+        str += "\nWins: " + wins + " (" + String.format("%.2f", getWinRate() * 100) + "%)";
+        str += "\nLosses: " + losses;
+        str += "\nQuit or ran out of turns: " + quits;
+        str += "\nAverage turns per game: " + String.format("%.2f", games == 0 ? 0 : (double) turns / games);
+        str += "\nAverage turns to win: " + String.format("%.2f", getAverageTurnsToWin());
+        str += "\nTurns to win: " + turnsToWin;
+        str += "\nFinal gold: " + finalGold;
+        str += "\nBrawls won: " + brawlsWon + ", lost: " + brawlsLost + ", items broken: " + itemsBroken;
+
+        int modesPlayed = 0;
+        if (byMode != null) {
+            for (SimulationResult result : byMode) {
+                if (result != null) {
+                    modesPlayed++;
+                }
+            }
+        }
+        if (modesPlayed > 1) {
+            for (int i = 0; i < byMode.length; i++) {
+                if (byMode[i] != null) {
+                    str += "\n\n" + TreasureHunter.MODES[i] + ":\n" + byMode[i];
+                }
+            }
+        }
+        return str;
+    }
+}
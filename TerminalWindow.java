@@ -0,0 +1,164 @@
+import java.io.PrintWriter;
+
+/**
+ * The TerminalWindow shows the game as ANSI colored text on a character stream,
+ * such as a terminal or a network connection.<p>
+ * Text is kept in a buffer and written out in one go on {@link #flush()}. A screen shown with
+ * {@link #showRegions} is redrawn from the first changed region down, moving the cursor there
+ * rather than clearing the whole screen.<p>
+ * The cursor is placed by screen row, so the window follows where its text lands on the terminal: lines
+ * longer than the terminal is wide take one row per wrap, and colour codes take none. Once the text since
+ * the screen was last drawn from the top could have scrolled the terminal, with a few rows to spare for the
+ * player's answers, which the terminal echoes where the window can't see them, the rows no longer start at
+ * the top and the screen is drawn afresh instead.
+ */
+
+public class TerminalWindow implements GameWindow {
+    // clears the screen and moves the cursor to the top left corner
+    private static final String CLEAR_SCREEN = "\033[H\033[2J";
+    // clears from the cursor to the end of the screen
+    private static final String ERASE_BELOW = "\033[J";
+    public static final int DEFAULT_COLUMNS = 80;
+    public static final int DEFAULT_ROWS = 24;
+    // rows left free for the answers the terminal echoes between two screens
+    private static final int ECHO_ROWS = 4;
+
+    // instance variables
+    private PrintWriter out;
+    private StringBuilder buffer;
+    // how many regions are on screen, or -1 if the screen wasn't drawn by showRegions
+    private int regionCount;
+    private int columns;
+    private int rows;
+    // where the text written since the screen was cleared has left the cursor, counted in screen rows
+    private int cursorRow;
+    private int cursorColumn;
+
+    /**
+     * Writes to a terminal of {@value #DEFAULT_COLUMNS} by {@value #DEFAULT_ROWS}.
+     *
+     * @param out Where the text is written; it is flushed on every {@link #flush()}.
+     */
+    public TerminalWindow(PrintWriter out) {
+        this(out, DEFAULT_COLUMNS, DEFAULT_ROWS);
+    }
+
+    /**
+     * @param out Where the text is written; it is flushed on every {@link #flush()}.
+     * @param columns How many characters fit on a row of the terminal.
+     * @param rows How many rows the terminal shows.
+     */
+    public TerminalWindow(PrintWriter out, int columns, int rows) {
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("A terminal needs at least one column and row: " + columns + "x" + rows);
+        }
+        this.out = out;
+        this.columns = columns;
+        this.rows = rows;
+        buffer = new StringBuilder();
+        regionCount = -1;
+    }
+
+    /**
+     * Reads the terminal's size from the COLUMNS and LINES variables that shells set, for the game's own terminal.
+     *
+     * @param out Where the text is written.
+     * @return The window, {@value #DEFAULT_COLUMNS} by {@value #DEFAULT_ROWS} if the variables are missing.
+     */
+    static TerminalWindow ofEnvironment(PrintWriter out) {
+        return new TerminalWindow(out, sizeFromEnvironment("COLUMNS", DEFAULT_COLUMNS), sizeFromEnvironment("LINES", DEFAULT_ROWS));
+    }
+
+    public void addTextToWindow(String text, TextColor color) {
+        buffer.append(color.getAnsiCode()).append(text).append(Colors.RESET);
+        advance(text);
+    }
+
+    public void clear() {
+        buffer.setLength(0);
+        buffer.append(CLEAR_SCREEN);
+        regionCount = -1;
+        cursorRow = 0;
+        cursorColumn = 0;
+    }
+
+    public void showRegions(String[] texts, TextColor[] colors, boolean[] changed) {
+        // the rows are only where they were drawn if nothing since could have scrolled them away
+        if (regionCount != texts.length || cursorRow + ECHO_ROWS >= rows) {
+            GameWindow.super.showRegions(texts, colors, changed);
+            regionCount = texts.length;
+            return;
+        }
+        int first = 0;
+        while (first < texts.length && !changed[first]) {
+            first++;
+        }
+        // the regions above the first changed one are still on screen, so start where they end
+        cursorRow = 0;
+        cursorColumn = 0;
+        for (int i = 0; i < first; i++) {
+            advance(texts[i]);
+        }
+        if (cursorColumn == columns) {
+            // the last row is full, and the terminal wraps before the next character
+            cursorRow++;
+            cursorColumn = 0;
+        }
+        buffer.setLength(0);
+        buffer.append("\033[").append(cursorRow + 1).append(';').append(cursorColumn + 1).append('H').append(ERASE_BELOW);
+        for (int i = first; i < texts.length; i++) {
+            addTextToWindow(texts[i], colors[i]);
+        }
+        if (cursorRow + ECHO_ROWS >= rows) {
+            // too tall to patch next time, so the next screen starts from a clean one
+            regionCount = -1;
+        }
+    }
+
+    public void flush() {
+        long start = System.nanoTime();
+        if (buffer.length() > 0) {
+            out.print(buffer);
+            buffer.setLength(0);
+        }
+        out.flush();
+        GameMetrics.INSTANCE.recordRender(start);
+    }
+
+    /**
+     * Moves the tracked cursor over some text the way the terminal moves its cursor: to the next row on a line
+     * break, and onto the next row before a character that doesn't fit on a full one. Colour codes don't move it.
+     */
+    private void advance(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\033') {
+                // skip the escape sequence up to its final letter
+                i++;
+                while (i + 1 < text.length() && !Character.isLetter(text.charAt(i + 1))) {
+                    i++;
+                }
+                i++;
+            } else if (c == '\n') {
+                cursorRow++;
+                cursorColumn = 0;
+            } else if (c != '\r') {
+                if (cursorColumn == columns) {
+                    cursorRow++;
+                    cursorColumn = 0;
+                }
+                cursorColumn++;
+            }
+        }
+    }
+
+    private static int sizeFromEnvironment(String variable, int fallback) {
+        try {
+            String value = System.getenv(variable);
+            int size = value == null ? 0 : Integer.parseInt(value.trim());
+            return size > 0 ? size : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -7,6 +7,8 @@ public class Terrain {
     // instance variables
     private String terrainName;
     private String neededItem;
+    private Item item;
+    private boolean swordCrosses;
 
     /**
      * Sets the class member variables
@@ -15,8 +17,20 @@ public class Terrain {
      * @param item The item needed in order to cross the zone.
      */
     public Terrain(String name, String item) {
+        // a sword cuts through the jungle just as well as a machete
+        this(name, item, name.equals("Jungle"));
+    }
+
+    /**
+     * @param name The name of the zone.
+     * @param item The item needed in order to cross the zone.
+     * @param swordCrosses Whether a sword will do instead of the item.
+     */
+    public Terrain(String name, String item, boolean swordCrosses) {
         terrainName = name;
         neededItem = item.toLowerCase();
+        this.item = Item.fromName(neededItem);
+        this.swordCrosses = swordCrosses;
     }
 
     // accessors
@@ -28,6 +42,14 @@ public class Terrain {
         return neededItem;
     }
 
+    public Item getItem() {
+        return item;
+    }
+
+    public boolean isCrossableWithSword() {
+        return swordCrosses;
+    }
+
     /**
      * Guards against a hunter crossing the zone without the proper item.
      * Searches the hunter's inventory for the proper item and determines whether the hunter can cross.
@@ -36,7 +58,7 @@ public class Terrain {
      * @return true if the Hunter has the proper item.
      */
     public boolean canCrossTerrain(Hunter hunter) {
-        return (hunter.hasItemInKit(neededItem) || (terrainName.equals("Jungle") && hunter.hasItemInKit("sword")));
+        return (hunter.hasItem(item) || (swordCrosses && hunter.hasItem(Item.SWORD)));
     }
 
     /**
@@ -0,0 +1,27 @@
+/**
+ * The TextColor enum lists the colors the game writes its text in.<p>
+ * It belongs to the game rather than to AWT, so a game played in a terminal never has to load AWT
+ * just to name a color. Each window maps these onto whatever it draws with: the Swing
+ * {@link OutputWindow} picks an AWT color, and the {@link TerminalWindow} uses the ANSI codes in {@link Colors}.
+ */
+
+public enum TextColor {
+    RED(Colors.RED),
+    GREEN(Colors.GREEN),
+    BLUE(Colors.BLUE),
+    PINK(Colors.PURPLE);
+
+    // instance variables
+    private final String ansiCode;
+
+    TextColor(String ansiCode) {
+        this.ansiCode = ansiCode;
+    }
+
+    /**
+     * @return The ANSI escape code that switches a terminal to this color.
+     */
+    public String getAnsiCode() {
+        return ansiCode;
+    }
+}
@@ -1,23 +1,34 @@
+import java.util.SplittableRandom;
+
 /**
  * The Town Class is where it all happens.
  * The Town is designed to manage all the things a Hunter can do in town.
+ * Everything that happens is published as a {@link GameEvent}; the {@link NewsRenderer} turns the events into
+ * the news the player reads, so the town itself never builds any text.
  * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
  */
 
 public class Town {
     // instance variables
+    // the rules the town was built with, which are those of its shop
+    private Ruleset rules;
+    private int modeIndex;
     private Hunter hunter;
     private Shop shop;
     private Terrain terrain;
-    private String printMessage;
-    private double toughness;
+    private int terrainIndex;
     private boolean toughTown;
-    private boolean dugBefore = false;
-    private boolean treasureSearched = false;
+    // whether the gold has been dug up and the treasure found, as World.DUG and World.SEARCHED flags;
+    // in a shared world they are kept in the town's spot instead, shared with the other hunters
+    private byte flags;
+    private SharedWorld.Spot spot;
+    private boolean occupied;
     private String[] treasures = {"dust", "gem", "crown", "trophy"};
     private String treasure;
     private String mode;
-    private OutputWindow window;
+    private GameWindow window;
+    private SplittableRandom random;
+    private EventBus events;
 
 
     /**
@@ -26,8 +37,36 @@ public class Town {
      * @param shop The town's shoppe.
      * @param mode Mode of game.
      */
-    public Town(Shop shop, String mode, OutputWindow window) {
+    public Town(Shop shop, String mode, GameWindow window) {
+        this(shop, mode, window, new SplittableRandom());
+    }
+
+    /**
+     * Builds a town whose every roll of the dice comes from the given random source,
+     * so that the same seed always plays out the same way.
+     *
+     * @param shop The town's shoppe.
+     * @param mode Mode of game.
+     * @param random The random source of the game.
+     */
+    public Town(Shop shop, String mode, GameWindow window, SplittableRandom random) {
+        this(shop, mode, window, random, random);
+    }
+
+    /**
+     * Builds a town whose layout (terrain, toughness and treasure) comes from one random source
+     * and whose events come from another, so that the same layout seed always builds the same town.
+     *
+     * @param shop The town's shoppe.
+     * @param mode Mode of game.
+     * @param layout The random source the town is laid out with.
+     * @param random The random source of the game.
+     */
+    public Town(Shop shop, String mode, GameWindow window, SplittableRandom layout, SplittableRandom random) {
+        this.random = layout;
         this.shop = shop;
+        rules = shop.getRules();
+        modeIndex = TreasureHunter.modeIndex(mode);
         this.terrain = getNewTerrain();
         this.mode = mode;
         this.window = window;
@@ -36,21 +75,100 @@ public class Town {
         // gets called from a client class
         hunter = null;
 
-        printMessage = "";
-
         // higher toughness = more likely to be a tough town
-        toughTown = (Math.random() < toughness);
+        toughTown = (layout.nextDouble() < rules.getToughness(modeIndex));
         treasure = chooseTreasure();
+        this.random = random;
+    }
+
+    /**
+     * Rebuilds a town exactly as it was, for replays and saved games.
+     *
+     * @param shop The town's shoppe.
+     * @param mode Mode of game.
+     * @param random The random source of the game.
+     * @param terrainIndex The index of the town's terrain, see {@link #getTerrainIndex()}.
+     * @param treasure The treasure hidden in the town.
+     * @param toughTown Whether it is a tough town.
+     */
+    Town(Shop shop, String mode, GameWindow window, SplittableRandom random, int terrainIndex, Treasure treasure, boolean toughTown) {
+        this.random = random;
+        this.shop = shop;
+        rules = shop.getRules();
+        modeIndex = TreasureHunter.modeIndex(mode);
+        this.terrainIndex = terrainIndex;
+        this.terrain = rules.getTerrain(terrainIndex);
+        this.mode = mode;
+        this.window = window;
+        hunter = null;
+        this.toughTown = toughTown;
+        this.treasure = treasure.getTreasureName();
+    }
+
+    /**
+     * Restores whether the town has been dug up and searched.
+     *
+     * @param dugBefore Whether gold was already dug up here.
+     * @param treasureSearched Whether the town was already searched for treasure.
+     */
+    void restoreState(boolean dugBefore, boolean treasureSearched) {
+        if (dugBefore) {
+            claim(World.DUG);
+        }
+        if (treasureSearched) {
+            claim(World.SEARCHED);
+        }
+    }
+
+    /**
+     * Makes this the hunter's copy of a town in a {@link SharedWorld}, whose gold and treasure go to
+     * whichever hunter claims them first. Must be called before the hunter arrives.
+     *
+     * @param spot The town's shared state.
+     */
+    void share(SharedWorld.Spot spot) {
+        this.spot = spot;
+    }
+
+    // accessors
+    public Terrain getTerrain() {
+        return terrain;
     }
 
-    public String getLatestNews() {
-        String prevMessage = printMessage;
-        printMessage = "";
-        return prevMessage;
+    public Shop getShop() {
+        return shop;
+    }
+
+    Ruleset getRules() {
+        return rules;
+    }
+
+    public boolean isTreasureSearched() {
+        return isClaimed(World.SEARCHED);
+    }
+
+    public boolean hasDugBefore() {
+        return isClaimed(World.DUG);
+    }
+
+    /**
+     * @return The index of the town's terrain, in the order its rules list them;
+     * by default Mountains, Ocean, Plains, Desert, Jungle, then Marsh.
+     */
+    public int getTerrainIndex() {
+        return terrainIndex;
+    }
+
+    public Treasure getTreasure() {
+        return Treasure.fromName(treasure);
+    }
+
+    public boolean isToughTown() {
+        return toughTown;
     }
 
     public String chooseTreasure(){
-        return treasures[(int)(Math.random() * 4)];
+        return treasures[rules.getTreasureTable().next(random)];
     }
 
     /**
@@ -60,12 +178,23 @@ public class Town {
      */
     public void hunterArrives(Hunter hunter) {
         this.hunter = hunter;
-        printMessage = "Welcome to town, " + hunter.getHunterName() + ".";
+        events = hunter.getEvents();
+        int others = 0;
+        if (spot != null && !occupied) {
+            occupied = true;
+            others = spot.arrive() - 1;
+        }
+        record(GameEvent.TOWN_ENTERED, terrainIndex | getTreasure().ordinal() << 4 | (toughTown ? 1 << 6 : 0)
+                | (hasDugBefore() ? 1 << 7 : 0) | (isTreasureSearched() ? 1 << 8 : 0), others);
+    }
 
-        if (toughTown) {
-            printMessage += "\nIt's pretty rough around here, so watch yourself.";
-        } else {
-            printMessage += "\nWe're just a sleepy little town with mild mannered folk.";
+    /**
+     * Takes the hunter off the town's head count in a shared world, when they leave town or stop playing.
+     */
+    public void hunterLeaves() {
+        if (occupied) {
+            occupied = false;
+            spot.leave();
         }
     }
 
@@ -77,30 +206,35 @@ public class Town {
     public boolean leaveTown() {
         boolean canLeaveTown = terrain.canCrossTerrain(hunter);
         if (canLeaveTown) {
-            String item = terrain.getNeededItem();
-            if (terrain.getTerrainName().equals("Jungle") && hunter.hasItemInKit("sword")){
-                item = Colors.RED + "Sword" + Colors.RESET;
-            }
-            printMessage = "You used your " + item + " to cross the " + terrain.getTerrainName() + ".";
-            if (checkItemBreak() && !item.equals(Colors.RED + "Sword" + Colors.RESET)) {
-                hunter.removeItemFromKit(item);
-                printMessage += "\nUnfortunately, you lost your " + item;
+            boolean usedSword = terrain.isCrossableWithSword() && hunter.hasItem(Item.SWORD);
+            boolean broke = checkItemBreak() && !usedSword;
+            record(GameEvent.TOWN_LEFT, usedSword ? Item.SWORD.ordinal() : terrain.getItem().ordinal(), broke ? 1 : 0);
+            if (broke) {
+                hunter.countBrokenItem();
+                hunter.removeItem(terrain.getItem());
             }
+            hunterLeaves();
 
             return true;
         }
 
-        printMessage = "You can't leave town, " + hunter.getHunterName() + ". You don't have a " + terrain.getNeededItem() + ".";
+        record(GameEvent.STUCK, terrain.getItem().ordinal(), 0);
         return false;
     }
 
     /**
      * Handles calling the enter method on shop whenever the user wants to access the shop.
+     * The visit is timed for {@link GameMetrics}, leaving out the time spent waiting for the player's answers.
      *
      * @param choice If the user wants to buy or sell items at the shop.
+     * @param input Where the user's answers come from.
      */
-    public void enterShop(String choice) {
-        shop.enter(hunter, choice);
+    public void enterShop(String choice, GameInput input) {
+        long start = System.nanoTime();
+        long waited = input.getWaitNanos();
+        record(GameEvent.SHOP_ENTERED, choice.equals("b") ? 0 : 1, 0);
+        shop.enter(hunter, choice, input);
+        GameMetrics.INSTANCE.recordShopVisit(start + (input.getWaitNanos() - waited));
     }
 
     /**
@@ -111,54 +245,51 @@ public class Town {
     public void lookForTrouble() {
         double noTroubleChance;
         if (toughTown) {
-            noTroubleChance = 0.66;
+            noTroubleChance = rules.getToughTroubleCutoff();
         } else {
-            noTroubleChance = 0.33;
+            noTroubleChance = rules.getCalmTroubleCutoff();
         }
-        if (Math.random() > noTroubleChance) {
-            printMessage = "You couldn't find any trouble";
+        if (random.nextDouble() > noTroubleChance) {
+            record(GameEvent.TROUBLE, GameEvent.TROUBLE_NONE, 0);
         } else {
-            int goldDiff = (int) (Math.random() * 10) + 1;
-            if (!hunter.hasItemInKit("sword")) {
-                printMessage += "You want trouble, stranger!  You got it!\nOof! Umph! Ow!\n";
+            int goldDiff = random.nextInt(rules.getMaxBrawlGold()) + 1;
+            if (!hunter.hasItem(Item.SWORD)) {
                 double chance = 0;
-                if (mode.equals("easy")) {
-                    chance = Math.random() * 1.5;
-                } else if (mode.equals("medium")) {
-                    chance = Math.random();
-                } else if (mode.equals("hard")) {
-                    chance = Math.random() * 0.5;
+                double odds = rules.getBrawlOdds(modeIndex);
+                if (odds > 0) {
+                    chance = random.nextDouble() * odds;
                 }
-                if (chance > Math.random()) {
-                    printMessage += "Okay, stranger! You proved yer mettle. Here, take my gold.";
-                    printMessage += "\nYou won the brawl and receive " + goldDiff + " gold.";
+                if (chance > random.nextDouble()) {
+                    record(GameEvent.TROUBLE, GameEvent.TROUBLE_WON, goldDiff);
+                    hunter.countBrawl(true);
                     hunter.changeGold(goldDiff);
                 } else {
-                    printMessage += "That'll teach you to go lookin' fer trouble in MY town! Now pay up!";
-                    printMessage += "\nYou lost the brawl and pay " + goldDiff + " gold.";
+                    record(GameEvent.TROUBLE, GameEvent.TROUBLE_LOST, goldDiff);
+                    hunter.countBrawl(false);
                     hunter.changeGold(-goldDiff);
                 }
             } else {
-                System.out.println("\nDude how is that even fair, you got a literal sword.");
-                System.out.println("You're actually so cringe.");
-                System.out.println("Just take my money and leave me alone!");
-                System.out.println("You got " + goldDiff + " gold.");
+                record(GameEvent.TROUBLE, GameEvent.TROUBLE_SWORD, goldDiff);
+                hunter.countBrawl(true);
                 hunter.changeGold(goldDiff);
             }
         }
     }
 
     public void digForGold() {
-        if (dugBefore) {
-            System.out.println("You already dug for gold in this town");
-        } else if (!hunter.hasItemInKit("shovel")) {
-            System.out.println("You can't dig for gold without a shovel");
-        } else if (Math.random() > 0.5) {
-            int dugUp = (int) (Math.random() * 20) + 1;
-            System.out.println("You dug up " + Colors.YELLOW + dugUp + " gold!" + Colors.RESET);
-            dugBefore = true;
+        if (isClaimed(World.DUG)) {
+            record(GameEvent.DUG, GameEvent.DIG_ALREADY_DUG, 0);
+        } else if (!hunter.hasItem(Item.SHOVEL)) {
+            record(GameEvent.DUG, GameEvent.DIG_NO_SHOVEL, 0);
+        } else if (random.nextDouble() > 1 - rules.getDigChance()) {
+            int dugUp = random.nextInt(rules.getMaxDigGold()) + 1;
+            if (claim(World.DUG)) {
+                record(GameEvent.DUG, GameEvent.DIG_GOLD, dugUp);
+            } else {
+                record(GameEvent.DUG, GameEvent.DIG_BEATEN, 0);
+            }
         } else {
-            System.out.println("You dug but only found dirt");
+            record(GameEvent.DUG, GameEvent.DIG_DIRT, 0);
         }
     }
 
@@ -172,35 +303,19 @@ public class Town {
      * @return A Terrain object.
      */
     private Terrain getNewTerrain() {
-        int rnd = (int) (Math.random() * 6);
-        dugBefore = false;
-        if (rnd == 0) {
-            return new Terrain("Mountains", "Rope");
-        } else if (rnd == 1) {
-            return new Terrain("Ocean", "Boat");
-        } else if (rnd == 2) {
-            return new Terrain("Plains", "Horse");
-        } else if (rnd == 3) {
-            return new Terrain("Desert", "Water");
-        } else if (rnd == 4) {
-            return new Terrain("Jungle", "Machete");
-        } else {
-            return new Terrain("Marsh", "Boots");
-        }
+        terrainIndex = rules.getTerrainTable().next(random);
+        return rules.getTerrain(terrainIndex);
     }
 
     // search for treasure
     public String searchTreasure(){
-        if (!treasureSearched){
-            treasureSearched = true;
-            if (treasure.equals("dust")){
-                System.out.println("You found some dust");
-            } else {
-                System.out.println("You found a " + treasure);
+        if (claim(World.SEARCHED)){
+            record(GameEvent.SEARCHED, getTreasure().ordinal(), 0);
+            if (!treasure.equals("dust")){
                 return treasure;
             }
         } else {
-            System.out.println("This town has already been searched");
+            record(GameEvent.ALREADY_SEARCHED, 0, 0);
         }
         return "N/A";
     }
@@ -211,10 +326,41 @@ public class Town {
      * @return true if the item broke.
      */
     private boolean checkItemBreak() {
-        double rand = Math.random();
-        if (mode.equals("easy")) {
+        double rand = random.nextDouble();
+        return (rand < rules.getItemBreakChance(modeIndex));
+    }
+
+    /**
+     * @return true if the flag is set, in the town's spot if it is shared.
+     */
+    private boolean isClaimed(int flag) {
+        return spot != null ? spot.isClaimed(flag) : (flags & flag) != 0;
+    }
+
+    /**
+     * Sets a flag if it isn't set yet, in the town's spot if it is shared.
+     *
+     * @param flag {@link World#DUG} or {@link World#SEARCHED}.
+     * @return true if this call set it.
+     */
+    private boolean claim(int flag) {
+        if (spot != null) {
+            return spot.claim(flag);
+        }
+        if ((flags & flag) != 0) {
             return false;
         }
-        return (rand < 0.5);
+        flags |= flag;
+        return true;
+    }
+
+    /**
+     * Publishes a town event to the game's bus. A town whose hunter has no bus, such as one played by a
+     * simulation or rebuilt by a replay, publishes nothing, so only games that are played count in the metrics.
+     */
+    private void record(GameEvent event, int arg, int value) {
+        if (events != null) {
+            events.publish(event, arg, value);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+/**
+ * The Treasure enum lists what can be found by hunting for treasure in a town.<p>
+ * Like {@link Item}, each treasure owns one bit, so the treasures a hunter found fit in a single int.
+ */
+
+public enum Treasure {
+    DUST("dust"),
+    GEM("gem"),
+    CROWN("crown"),
+    TROPHY("trophy");
+
+    // finding all three of these wins the game; dust doesn't count
+    public static final int WINNING_MASK = GEM.bit() | CROWN.bit() | TROPHY.bit();
+
+    // instance variables
+    private final String treasureName;
+    private final int bit;
+
+    Treasure(String treasureName) {
+        this.treasureName = treasureName;
+        this.bit = 1 << ordinal();
+    }
+
+    public String getTreasureName() {
+        return treasureName;
+    }
+
+    /**
+     * @return The bit this treasure takes up in a treasure mask.
+     */
+    public int bit() {
+        return bit;
+    }
+
+    /**
+     * Looks up a treasure by name.
+     *
+     * @param name The lower case name of the treasure.
+     * @return The treasure, or null if there is no treasure with that name.
+     */
+    public static Treasure fromName(String name) {
+        switch (name) {
+            case "dust": return DUST;
+            case "gem": return GEM;
+            case "crown": return CROWN;
+            case "trophy": return TROPHY;
+            default: return null;
+        }
+    }
+}
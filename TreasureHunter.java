@@ -1,168 +1,442 @@
-import java.awt.Color;
-import java.util.Scanner;
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
 
 /**
  * This class is responsible for controlling the Treasure Hunter game.<p>
  * It handles the display of the menu and the processing of the player's choices.<p>
- * It handles all the display based on the messages it receives from the Town object. <p>
+ * It handles all the display based on the news its {@link NewsRenderer} makes of the game's events. <p>
  *
  * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
  */
 
 public class TreasureHunter {
-    // static variables
-    private static final Scanner SCANNER = new Scanner(System.in);
+    // every mode, in the order their indexes are saved in
+    static final String[] MODES = {"easy", "normal", "hard", "samurai", "test"};
 
     // instance variables
     private Town currentTown;
     private Hunter hunter;
     private String mode;
-    private static boolean gameOver;
-    OutputWindow window = new OutputWindow();
+    // the rules the game started with; rules reloaded while it is being played only reach new games
+    private Ruleset rules;
+    private SplittableRandom random;
+    private long seed;
+    private GameWindow window;
+    private GameInput input;
+    // carries the game's events to its news, its journal and the metrics
+    private EventBus events;
+    private NewsRenderer news;
+    private AutoSaver autoSaver;
+    private ProfileStore profiles;
+    private World world;
+    private SharedWorld sharedWorld;
+    // built the first time a route is planned, and again whenever the hunter walks off its map
+    private RoutePlanner planner;
+    private GameView view;
+    // a planned route, shown above the town's news
+    private String travelNews;
+    // how many menu choices have been processed
+    private int turns;
+    private int x;
+    private int y;
 
     /**
      * Constructs the Treasure Hunter game.
      */
     public TreasureHunter() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructs a Treasure Hunter game that can be replayed from its seed.
+     *
+     * @param seed The seed for every random roll in the game.
+     */
+    public TreasureHunter(long seed) {
+        this(seed, openWindow("auto"), GameInput.stdin());
+    }
+
+    /**
+     * Constructs a Treasure Hunter game with its own window and input, so that
+     * several games can be played at once without sharing anything.
+     *
+     * @param seed The seed for every random roll in the game.
+     * @param window Where all of the game's text goes.
+     * @param input Where the player's answers come from.
+     */
+    TreasureHunter(long seed, GameWindow window, GameInput input) {
         // these will be initialized in the play method
         currentTown = null;
         hunter = null;
-        gameOver = false;
+        random = new SplittableRandom(seed);
+        this.seed = seed;
+        this.window = window;
+        this.input = input;
+        events = new EventBus();
+        events.subscribe(GameMetrics.INSTANCE::countEvent);
+        view = new GameView();
+        travelNews = "";
+    }
+
+    /**
+     * Opens the window a game is played in on this machine.<p>
+     * Swing is only loaded if the Swing window is picked, so a game played in a terminal
+     * gets to its first prompt without starting AWT at all.
+     *
+     * @param kind "swing", "terminal", or "auto" for Swing unless there is no display.
+     * @return The new window.
+     */
+    static GameWindow openWindow(String kind) {
+        if (kind.equals("auto")) {
+            kind = GraphicsEnvironment.isHeadless() ? "terminal" : "swing";
+        }
+        if (kind.equals("terminal")) {
+            return TerminalWindow.ofEnvironment(new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))));
+        }
+        return new OutputWindow();
+    }
+
+    // accessors
+    public Hunter getHunter() {
+        return hunter;
+    }
+
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * Records every state-changing action of the game from now on. The journal is written to on one of
+     * the {@link EventBus}'s threads, and is up to date once {@link #play()} returns.
+     *
+     * @param journal The journal to record to.
+     */
+    public void setJournal(GameJournal journal) {
+        events.subscribe(journal::record);
+    }
+
+    /**
+     * Saves the game in the background after every turn from now on.
+     *
+     * @param autoSaver The saver to hand each turn's snapshot to.
+     */
+    public void setAutoSaver(AutoSaver autoSaver) {
+        this.autoSaver = autoSaver;
     }
 
     /**
-     * Starts the game; this is the only public method
+     * Adds the game to the hunter's lifetime profile when it ends, and greets returning hunters with it.
+     *
+     * @param profiles The store the profiles are kept in.
+     */
+    public void setProfiles(ProfileStore profiles) {
+        this.profiles = profiles;
+    }
+
+    /**
+     * Plays in a world shared with other hunters, racing them for its gold and treasure,
+     * instead of a world of the game's own.
+     *
+     * @param sharedWorld The world every hunter in it shares.
+     */
+    public void setSharedWorld(SharedWorld sharedWorld) {
+        this.sharedWorld = sharedWorld;
+    }
+
+    /**
+     * Picks up a saved game where it was left off, instead of starting a new one.
+     *
+     * @param snapshot The saved game.
+     */
+    public void load(GameSnapshot snapshot) {
+        mode = snapshot.getMode();
+        rules = Ruleset.current();
+        hunter = snapshot.toHunter();
+        listenForNews(hunter.getHunterName(), false);
+        // the journal has nothing from before the save, so it starts from the hunter as they were saved
+        GameJournal.recordLoadedGame(hunter, modeIndex(mode), events::publish);
+        hunter.setEvents(events);
+        world = snapshot.toWorld(rules, window, random);
+        x = snapshot.getX();
+        y = snapshot.getY();
+        currentTown = snapshot.toTown(hunter, world);
+    }
+
+    /**
+     * Starts the game, or carries on with a loaded one
      */
     public void play() {
-        welcomePlayer();
-        enterTown();
-        showMenu();
+        RuntimeException failure = null;
+        try {
+            if (hunter == null) {
+                welcomePlayer();
+            }
+            showMenu();
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (currentTown != null) {
+                currentTown.hunterLeaves();
+            }
+            try {
+                events.awaitDrained();
+            } catch (RuntimeException e) {
+                // a handler that failed mustn't hide why the game itself stopped
+                if (failure == null) {
+                    throw e;
+                }
+                if (e != failure) {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the news of the game from its events from now on.
+     *
+     * @param name The hunter's name.
+     * @param shared Whether the game is played in a {@link SharedWorld}.
+     */
+    private void listenForNews(String name, boolean shared) {
+        news = new NewsRenderer(name, rules, shared);
+        events.subscribe(news);
     }
 
     /**
      * Creates a hunter object at the beginning of the game and populates the class member variable with it.
      */
     private void welcomePlayer() {
-        Color pink = Color.pink;
+        TextColor pink = TextColor.PINK;
         window.clear();
         window.addTextToWindow("Welcome to TREASURE HUNTER!", pink);
         window.addTextToWindow("\nGoing hunting for the big treasure, eh?", pink);
         window.addTextToWindow("\n\nWhat's your name, Hunter? ", pink);
-        String name = SCANNER.nextLine().toLowerCase();
+        window.flush();
+        String name = input.nextLine().toLowerCase();
+        if (profiles != null && profiles.find(name) >= 0) {
+            window.addTextToWindow("\nWelcome back! " + profiles.describe(name), pink);
+        }
+
+        window.addTextToWindow("\n(E)asy, (N)ormal, or (H)ard mode:", TextColor.BLUE);
+        window.flush();
+        setUp(name, input.nextLine().toLowerCase());
+    }
 
+    /**
+     * Creates the hunter for the chosen mode and puts them in their first town,
+     * without asking the player anything.
+     *
+     * @param name The hunter's name.
+     * @param modeChoice The letter typed for the mode.
+     */
+    void setUp(String name, String modeChoice) {
         // set hunter instance variable
-        hunter = new Hunter(name, 0, window);
-
-        window.addTextToWindow("\n(E)asy, (N)ormal, or (H)ard mode:", Color.blue);
-        mode = SCANNER.nextLine().toLowerCase();
-        switch (mode) {
-            case "e" -> {
-                mode = "easy";
-                hunter.changeGold(25);
-            }
-            case "n" -> {
-                mode = "normal";
-                hunter.changeGold(15);
-            }
-            case "h" -> {
-                mode = "hard";
-                hunter.changeGold(10);
-            }
+        rules = Ruleset.current();
+        hunter = new Hunter(name, 0);
+        listenForNews(name, sharedWorld != null);
+        GameJournal.recordGameStarted(name, events::publish);
+        hunter.setEvents(events);
+        mode = chooseMode(hunter, modeChoice, rules);
+        events.publish(GameEvent.MODE_CHOSEN, modeIndex(mode), 0);
+        if (sharedWorld != null) {
+            world = new World(sharedWorld, rules, mode, window, random, World.DEFAULT_CACHE_SIZE);
+        } else {
+            world = new World(random.nextLong(), rules, mode, window, random, World.DEFAULT_CACHE_SIZE);
+        }
+        x = 0;
+        y = 0;
+        enterTown();
+    }
+
+    /**
+     * Sets up the hunter for the mode picked on the welcome screen.
+     *
+     * @param hunter The new hunter.
+     * @param choice The letter the player typed for the mode.
+     * @param rules The rules of the game, which say how much gold the mode starts with.
+     * @return The name of the chosen mode.
+     */
+    static String chooseMode(Hunter hunter, String choice, Ruleset rules) {
+        String mode;
+        switch (choice) {
+            case "e" -> mode = "easy";
+            case "n" -> mode = "normal";
+            case "h" -> mode = "hard";
             case "s" -> {
                 mode = "samurai";
                 hunter.setSamurai();
-                hunter.changeGold(15);
-            }
-            default -> {
-                mode = "test";
-                hunter.changeGold(100);
             }
+            default -> mode = "test";
         }
+        hunter.changeGold(rules.getStartingGold(modeIndex(mode)));
+        return mode;
     }
 
     /**
-     * Creates a new town and adds the Hunter to it.
+     * Moves the Hunter into the town at their current coordinates.
      */
     private void enterTown() {
-        double markdown = 0.25;
-        double toughness = 0.4;
-        switch (mode) {
-            case "easy" -> {
-                markdown = 1;
-                toughness = 0.25;
-                hunter.changeGold(20);
-            }
-            case "medium" -> {
-                markdown = 0.5;
-                toughness = 0.5;
-                hunter.changeGold(15);
-            }
-            case "hard" -> {
-                markdown = 0.25;
-                toughness = 0.75;
-                hunter.changeGold(10);
-            }
-            case "test" -> {
-                hunter.changeGold(100);
-                hunter.addAll();
-            }
-        }
+        currentTown = world.enter(x, y, hunter);
+    }
 
+    /**
+     * Builds a new town for the given mode and adds the Hunter to it.
+     *
+     * @param hunter The Hunter arriving in town.
+     * @param mode The mode of the game.
+     * @param rules The rules of the game.
+     * @param window Where the town and its shop write their text.
+     * @param random The random source of the game.
+     * @return The new Town.
+     */
+    static Town newTown(Hunter hunter, String mode, Ruleset rules, GameWindow window, SplittableRandom random) {
         // note that we don't need to access the Shop object
         // outside of this method, so it isn't necessary to store it as an instance
         // variable; we can leave it as a local variable
-        Shop shop = new Shop(markdown, window);
+        Shop shop = new Shop(rules, modeIndex(mode), window);
+
+        // creating the new Town -- which the caller needs to store as an instance
+        // variable, since it needs to access the Town object in other methods
+        Town town = new Town(shop, mode, window, random);
+        arrive(hunter, town, mode);
+        return town;
+    }
+
+    /**
+     * Hands out the gold the mode gives for reaching a town and adds the Hunter to it.
+     *
+     * @param hunter The Hunter arriving in town.
+     * @param town The Town being entered.
+     * @param mode The mode of the game.
+     */
+    static void arrive(Hunter hunter, Town town, String mode) {
+        int gold = town.getRules().getArrivalGold(modeIndex(mode));
+        if (gold != 0) {
+            hunter.changeGold(gold);
+        }
+        if (mode.equals("test")) {
+            hunter.addAll();
+        }
 
-        // creating the new Town -- which we need to store as an instance
-        // variable in this class, since we need to access the Town
-        // object in other methods of this class
-        currentTown = new Town(shop, mode, window);
+        hunter.countTown();
 
         // calling the hunterArrives method, which takes the Hunter
         // as a parameter; note this also could have been done in the
         // constructor for Town, but this illustrates another way to associate
         // an object with an object of a different class
-        currentTown.hunterArrives(hunter);
+        town.hunterArrives(hunter);
+    }
+
+    /**
+     * @param mode The name of a mode.
+     * @return Its index in {@link #MODES}, or -1 if there is no such mode.
+     */
+    static int modeIndex(String mode) {
+        for (int i = 0; i < MODES.length; i++) {
+            if (MODES[i].equals(mode)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
      * Displays the menu and receives the choice from the user.<p>
+     * Only the parts of the screen whose state changed since the last turn are drawn again.<p>
      * The choice is sent to the processChoice() method for parsing.<p>
      * This method will loop until the user chooses to exit.
      */
     private void showMenu() {
         String choice = "";
 
-        while (!choice.equals("x") && !gameOver) {
-            window.clear();
-            window.addTextToWindow(currentTown.getLatestNews(), Color.red);
-            window.addTextToWindow("\n***", Color.blue);
-            window.addTextToWindow("\n" + String.valueOf(hunter), Color.blue);
-            window.addTextToWindow("\n" + String.valueOf(currentTown), Color.blue);
-            window.addTextToWindow("\n(B)uy something at the shop.", Color.blue);
-            window.addTextToWindow("\n(S)ell something at the shop.", Color.blue);
-            window.addTextToWindow("\n(M)ove on to a different town.", Color.blue);
-            window.addTextToWindow("\n(L)ook for trouble!", Color.blue);
-            window.addTextToWindow("\n(D)ig for gold", Color.blue);
-            window.addTextToWindow("\n(H)unt for treasure", Color.blue);
-            window.addTextToWindow("\nGive up the hunt and e(X)it.", Color.blue);
-            window.addTextToWindow("\n\nWhat's your next move? ", Color.blue);
-            choice = SCANNER.nextLine().toLowerCase();
+        while (!choice.equals("x") && !hunter.isGameOver()) {
+            // the news is made on the bus's thread, so it is only complete once the bus has caught up
+            events.catchUp();
+            view.show(window, travelNews + news.takeNews(), hunter, currentTown);
+            travelNews = "";
+            choice = input.nextLine().toLowerCase();
             processChoice(choice);
+            if (autoSaver != null) {
+                autoSaver.save(GameSnapshot.of(hunter, currentTown, mode, world, x, y));
+            }
+        }
+        boolean recorded = profiles == null
+                || profiles.recordGame(hunter.getHunterName(), modeIndex(mode), hunter.hasWon(), hunter.getGold(), hunter.getTreasureMask());
+        events.catchUp();
+        if (news.getEnding() != null) {
+            window.addTextToWindow(news.getEnding(), hunter.hasWon() ? TextColor.GREEN : TextColor.RED);
+        }
+        if (!recorded) {
+            window.addTextToWindow("\nThe profile book is full, so this game couldn't be added to your profile.", TextColor.PINK);
         }
+        if (hunter.isGameOver()) {
+            Leaderboard.INSTANCE.record(hunter, seed, modeIndex(mode), turns);
+            window.addTextToWindow("\n\n" + Leaderboard.INSTANCE.toString(modeIndex(mode)), TextColor.BLUE);
+        }
+        window.flush();
     }
 
     /**
      * Takes the choice received from the menu and calls the appropriate method to carry out the instructions.
+     * Every turn is timed for {@link GameMetrics} and reported to Flight Recorder as a {@link GameActionEvent}.
+     * The time spent waiting for the player's answers, such as which way to go, is left out of the metrics.
      * @param choice The action to process.
      */
-    private void processChoice(String choice) {
+    void processChoice(String choice) {
+        long start = System.nanoTime();
+        long waited = input.getWaitNanos();
+        GameActionEvent event = new GameActionEvent();
+        event.begin();
+        int action = GameMetrics.actionIndex(choice);
+        turns++;
+
+        takeAction(choice);
+
+        GameMetrics.INSTANCE.recordAction(action, start + (input.getWaitNanos() - waited));
+        if (event.shouldCommit()) {
+            event.action = GameMetrics.ACTIONS[action];
+            event.terrain = currentTown.getTerrain().getTerrainName();
+            event.gold = hunter.getGold();
+            event.commit();
+        }
+    }
+
+    /**
+     * Carries out the instructions for one choice.
+     * @param choice The action to process.
+     */
+    private void takeAction(String choice) {
         if (choice.equals("b") || choice.equals("s")) {
-            currentTown.enterShop(choice);
-        } else if (choice.equals("m")) {
+            currentTown.enterShop(choice, input);
+        } else if (choice.startsWith("m")) {
+            // the direction can be typed straight after the m, otherwise we ask for it
+            String direction = choice.substring(1);
+            if (direction.isEmpty()) {
+                window.addTextToWindow("\nWhich way? (N)orth, (S)outh, (E)ast or (W)est: ", TextColor.BLUE);
+                window.flush();
+                direction = input.nextLine().toLowerCase();
+            }
+            int newX = x;
+            int newY = y;
+            switch (direction) {
+                case "n" -> newY++;
+                case "s" -> newY--;
+                case "e" -> newX++;
+                case "w" -> newX--;
+                default -> {
+                    window.addTextToWindow("\nYikes! That's not a direction! Try again.", TextColor.RED);
+                    return;
+                }
+            }
             if (currentTown.leaveTown()) {
-                // This town is going away so print its news ahead of time.
-                System.out.println(currentTown.getLatestNews());
+                x = newX;
+                y = newY;
                 enterTown();
             }
         } else if (choice.equals("l")) {
@@ -171,15 +445,20 @@ public class TreasureHunter {
             currentTown.digForGold();
         } else if (choice.equals("x")) {
             window.clear();
-            window.addTextToWindow("Fare thee well, " + hunter.getHunterName() + "!", Color.blue);
+            window.addTextToWindow("Fare thee well, " + hunter.getHunterName() + "!", TextColor.BLUE);
         } else if (choice.equals("h")){
             hunter.addTreasure(currentTown.searchTreasure());
+            if (planner != null) {
+                planner.markSearched(x, y);
+            }
+        } else if (choice.equals("p")) {
+            if (planner == null || !planner.contains(x, y)) {
+                planner = RoutePlanner.around(world, x, y, RoutePlanner.DEFAULT_RADIUS, modeIndex(mode));
+            }
+            RoutePlanner.Route route = planner.toNearestUnsearched(x, y, hunter.getKitMask());
+            travelNews = (route == null ? "Every town around here has been searched." : route.toString()) + "\n";
         } else {
-            window.addTextToWindow("\nYikes! That's an invalid option! Try again.", Color.red);
+            window.addTextToWindow("\nYikes! That's an invalid option! Try again.", TextColor.RED);
         }
     }
-
-    public static void setGameOver(){
-        gameOver = true;
-    }
 }
\ No newline at end of file
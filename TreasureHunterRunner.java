@@ -1,6 +1,76 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
 public class TreasureHunterRunner {
-    public static void main(String[] args) {
-        TreasureHunter game = new TreasureHunter();
-        game.play();
+    /**
+     * Usage: java TreasureHunterRunner [seed] [--window swing|terminal] [--journal directory] [--save file] [--metrics file] [--rules file]
+     *        [--profiles file] [--profiles-capacity profiles]
+     */
+    public static void main(String[] args) throws IOException {
+        Long seed = null;
+        Path journalDirectory = null;
+        Path saveFile = null;
+        Path metricsFile = null;
+        Path profilesFile = null;
+        long profilesCapacity = ProfileStore.DEFAULT_CAPACITY;
+        String window = "auto";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--journal") && i + 1 < args.length) {
+                journalDirectory = Path.of(args[++i]);
+            } else if (args[i].equals("--save") && i + 1 < args.length) {
+                saveFile = Path.of(args[++i]);
+            } else if (args[i].equals("--window") && i + 1 < args.length) {
+                window = args[++i];
+            } else if (args[i].equals("--metrics") && i + 1 < args.length) {
+                metricsFile = Path.of(args[++i]);
+            } else if (args[i].equals("--rules") && i + 1 < args.length) {
+                RulesetWatcher.start(Path.of(args[++i]));
+            } else if (args[i].equals("--profiles") && i + 1 < args.length) {
+                profilesFile = Path.of(args[++i]);
+            } else if (args[i].equals("--profiles-capacity") && i + 1 < args.length) {
+                profilesCapacity = ProfileStore.capacityFor(Long.parseLong(args[++i]));
+            } else {
+                seed = Long.parseLong(args[i]);
+            }
+        }
+
+        GameMetrics.INSTANCE.registerInBackground();
+        if (metricsFile != null) {
+            GameMetrics.INSTANCE.dumpOnExit(metricsFile);
+        }
+
+        if (seed == null) {
+            seed = new SplittableRandom().nextLong();
+        }
+        TreasureHunter game = new TreasureHunter(seed, TreasureHunter.openWindow(window), GameInput.stdin());
+        GameJournal journal = journalDirectory != null ? new GameJournal(journalDirectory) : null;
+        AutoSaver autoSaver = null;
+        ProfileStore profiles = profilesFile != null ? new ProfileStore(profilesFile, profilesCapacity) : null;
+        try {
+            if (journal != null) {
+                game.setJournal(journal);
+            }
+            game.setProfiles(profiles);
+            if (saveFile != null) {
+                if (Files.exists(saveFile)) {
+                    game.load(AutoSaver.load(saveFile));
+                }
+                autoSaver = new AutoSaver(saveFile);
+                game.setAutoSaver(autoSaver);
+            }
+            game.play();
+        } finally {
+            if (autoSaver != null) {
+                autoSaver.close();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+            if (profiles != null) {
+                profiles.close();
+            }
+        }
     }
 }
\ No newline at end of file
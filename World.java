@@ -0,0 +1,252 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The World class is the map of towns a hunter travels through.<p>
+ * Towns sit on a grid and are only built the first time someone looks at them. Everything about a
+ * town's layout comes from the world seed and its coordinates, so a town that has been dropped from
+ * the cache is rebuilt exactly the same when the hunter comes back. The only thing that has to be
+ * remembered about a dropped town is whether it was dug up or searched, which is kept as one small
+ * delta per town. The built towns stay within the cache size no matter how far the hunter travels,
+ * and only the deltas grow, by one map entry for each town that was dug up or searched; towns that
+ * were only passed through cost nothing once they leave the cache.<p>
+ * A world can also be one hunter's view of a {@link SharedWorld}, in which case whether a town was dug up
+ * or searched is kept in the shared world instead, for every hunter at once.<p>
+ * Every town of a world is built with the rules the world was made with, so a town dropped from the cache
+ * and built again after the rules are reloaded is still the same town, with the same terrain and treasure.
+ */
+
+public class World {
+    // constants
+    public static final int DEFAULT_CACHE_SIZE = 64;
+    static final byte DUG = 1;
+    static final byte SEARCHED = 2;
+
+    // instance variables
+    private long worldSeed;
+    private Ruleset rules;
+    private String mode;
+    private GameWindow window;
+    private SplittableRandom random;
+    private LinkedHashMap<Long, Town> towns;
+    // one entry per dug up or searched town that isn't in the cache; unlike the cache this is never trimmed
+    private Map<Long, Byte> deltas;
+    private SharedWorld shared;
+
+    /**
+     * @param worldSeed The seed every town's layout is derived from.
+     * @param rules The rules every town is built with.
+     * @param mode The mode of the game.
+     * @param window Where the towns and their shops write their text.
+     * @param random The random source for everything that happens in the towns.
+     * @param cacheSize How many towns are kept built at once.
+     */
+    public World(long worldSeed, Ruleset rules, String mode, GameWindow window, SplittableRandom random, int cacheSize) {
+        this.worldSeed = worldSeed;
+        this.rules = rules;
+        this.mode = mode;
+        this.window = window;
+        this.random = random;
+        deltas = new HashMap<>();
+        // access order, so the least recently visited town is the one dropped
+        towns = new LinkedHashMap<>(cacheSize * 2, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Long, Town> eldest) {
+                if (size() <= cacheSize) {
+                    return false;
+                }
+                rememberDelta(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Builds one hunter's view of a shared world.
+     *
+     * @param shared The world every hunter shares.
+     * @param rules The rules every town is built with.
+     * @param mode The mode of the hunter's game.
+     * @param window Where the towns and their shops write their text.
+     * @param random The random source for everything that happens to this hunter in the towns.
+     * @param cacheSize How many towns are kept built at once.
+     */
+    public World(SharedWorld shared, Ruleset rules, String mode, GameWindow window, SplittableRandom random, int cacheSize) {
+        this(shared.getWorldSeed(), rules, mode, window, random, cacheSize);
+        this.shared = shared;
+    }
+
+    public long getWorldSeed() {
+        return worldSeed;
+    }
+
+    public Ruleset getRules() {
+        return rules;
+    }
+
+    /**
+     * Finds the town at the given coordinates, building it if it isn't in the cache.
+     *
+     * @param x The town's east-west coordinate.
+     * @param y The town's north-south coordinate.
+     * @return The town.
+     */
+    public Town townAt(int x, int y) {
+        long key = key(x, y);
+        Town town = towns.get(key);
+        if (town == null) {
+            Shop shop = new Shop(rules, TreasureHunter.modeIndex(mode), window);
+            SplittableRandom layout = new SplittableRandom(GameSeeds.forGame(worldSeed, key));
+            town = new Town(shop, mode, window, layout, random);
+            Byte delta = deltas.remove(key);
+            if (shared != null) {
+                town.share(shared.spotAt(key));
+            } else if (delta != null) {
+                town.restoreState((delta & DUG) != 0, (delta & SEARCHED) != 0);
+            }
+            towns.put(key, town);
+        }
+        return town;
+    }
+
+    /**
+     * Works out the terrain of every town in a rectangle without building the towns, for the {@link RoutePlanner}.
+     * The terrain is the first thing drawn when a town is laid out, so it takes one roll per town.
+     *
+     * @param minX The east-west coordinate of the south-west corner.
+     * @param minY The north-south coordinate of the south-west corner.
+     * @param width How many towns there are from west to east.
+     * @param height How many towns there are from south to north.
+     * @return The terrain index of every town, row by row from the south-west corner.
+     */
+    byte[] terrainsIn(int minX, int minY, int width, int height) {
+        AliasTable table = rules.getTerrainTable();
+        byte[] terrains = new byte[width * height];
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                SplittableRandom layout = new SplittableRandom(GameSeeds.forGame(worldSeed, key(minX + column, minY + row)));
+                terrains[row * width + column] = (byte) table.next(layout);
+            }
+        }
+        // towns that are built may have been placed from an old save
+        for (Map.Entry<Long, Town> entry : towns.entrySet()) {
+            int x = (int) (entry.getKey() >> 32);
+            int y = (int) (long) entry.getKey();
+            if (x >= minX && x < minX + width && y >= minY && y < minY + height) {
+                terrains[(y - minY) * width + (x - minX)] = (byte) entry.getValue().getTerrainIndex();
+            }
+        }
+        return terrains;
+    }
+
+    /**
+     * Puts a town with a known layout at the given coordinates, replacing whatever would be built there.
+     * Used for saves made before towns had coordinates.
+     *
+     * @param x The town's east-west coordinate.
+     * @param y The town's north-south coordinate.
+     * @param treasure The treasure hidden in the town.
+     * @param terrainIndex The index of the town's terrain.
+     * @param toughTown Whether it is a tough town.
+     * @return The town.
+     */
+    Town place(int x, int y, Treasure treasure, int terrainIndex, boolean toughTown) {
+        Shop shop = new Shop(rules, TreasureHunter.modeIndex(mode), window);
+        Town town = new Town(shop, mode, window, random, terrainIndex, treasure, toughTown);
+        towns.put(key(x, y), town);
+        return town;
+    }
+
+    /**
+     * Moves the hunter into the town at the given coordinates.
+     *
+     * @param x The town's east-west coordinate.
+     * @param y The town's north-south coordinate.
+     * @param hunter The arriving Hunter.
+     * @return The town the hunter is now in.
+     */
+    public Town enter(int x, int y, Hunter hunter) {
+        Town town = townAt(x, y);
+        TreasureHunter.arrive(hunter, town, mode);
+        return town;
+    }
+
+    /**
+     * Marks every searched town in a rectangle on a {@link RoutePlanner}, without building any town.
+     * In a shared world these are the towns any hunter has searched.
+     *
+     * @param planner The planner to mark the towns on.
+     * @param minX The east-west coordinate of the south-west corner.
+     * @param minY The north-south coordinate of the south-west corner.
+     * @param width How many towns there are from west to east.
+     * @param height How many towns there are from south to north.
+     */
+    void markSearched(RoutePlanner planner, int minX, int minY, int width, int height) {
+        if (shared != null) {
+            for (int y = minY; y < minY + height; y++) {
+                for (int x = minX; x < minX + width; x++) {
+                    if (shared.isClaimed(key(x, y), SEARCHED)) {
+                        planner.markSearched(x, y);
+                    }
+                }
+            }
+            return;
+        }
+        // the planner skips towns off its map; walking the entries leaves the cache's order alone
+        for (Map.Entry<Long, Byte> delta : deltas.entrySet()) {
+            if ((delta.getValue() & SEARCHED) != 0) {
+                planner.markSearched((int) (delta.getKey() >> 32), (int) (long) delta.getKey());
+            }
+        }
+        for (Map.Entry<Long, Town> entry : towns.entrySet()) {
+            if (entry.getValue().isTreasureSearched()) {
+                planner.markSearched((int) (entry.getKey() >> 32), (int) (long) entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * @return Every town that has been dug up or searched, as packed coordinates and flags,
+     * including the towns still in the cache.
+     */
+    public Map<Long, Byte> getDeltas() {
+        Map<Long, Byte> all = new HashMap<>(deltas);
+        for (Map.Entry<Long, Town> entry : towns.entrySet()) {
+            byte delta = deltaOf(entry.getValue());
+            if (delta != 0) {
+                all.put(entry.getKey(), delta);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Restores the dug and searched towns of a saved world.
+     *
+     * @param savedDeltas The deltas returned by {@link #getDeltas()}.
+     */
+    public void restoreDeltas(Map<Long, Byte> savedDeltas) {
+        towns.clear();
+        deltas.clear();
+        deltas.putAll(savedDeltas);
+    }
+
+    /**
+     * Packs a pair of coordinates into one map key.
+     */
+    static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private void rememberDelta(long key, Town town) {
+        byte delta = deltaOf(town);
+        if (delta != 0) {
+            deltas.put(key, delta);
+        }
+    }
+
+    private static byte deltaOf(Town town) {
+        return (byte) ((town.hasDugBefore() ? DUG : 0) | (town.isTreasureSearched() ? SEARCHED : 0));
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.SplittableRandom;
+import javax.swing.JTextPane;
+
+/**
+ * The default-package side of {@link bench.GameHooks}.<p>
+ * It owns one of each game object the benchmarks measure. The town's hunter starts in test mode
+ * with a full kit and plenty of gold, and is topped up after each call, so no benchmark ever ends
+ * the game.
+ */
+
+public class BenchmarkHooks implements bench.GameHooks {
+    private Hunter hunter;
+    private Shop shop;
+    private Hunter townHunter;
+    private Town town;
+    private OutputWindow window;
+    private GameView view;
+    private TreasureHunter game;
+
+    public BenchmarkHooks() {
+        hunter = new Hunter("bench", 100);
+        hunter.addItem("water");
+        hunter.addItem("rope");
+        hunter.addItem("horse");
+        hunter.addTreasure("gem");
+
+        shop = new Shop(0.5, HeadlessWindow.INSTANCE);
+
+        townHunter = new Hunter("bench", 0);
+        String mode = TreasureHunter.chooseMode(townHunter, "t", Ruleset.current());
+        town = TreasureHunter.newTown(townHunter, mode, Ruleset.current(), HeadlessWindow.INSTANCE, new SplittableRandom(42));
+
+        window = new OutputWindow(new JTextPane());
+        view = new GameView();
+
+        game = new TreasureHunter(42, HeadlessWindow.INSTANCE, GameInput.of(""));
+        game.setUp("bench", "t");
+    }
+
+    public boolean hasItemInKit(String item) {
+        return hunter.hasItemInKit(item);
+    }
+
+    public boolean addAndRemoveItem(String item) {
+        boolean added = hunter.addItem(item);
+        hunter.removeItemFromKit(item);
+        return added;
+    }
+
+    public String getInventory() {
+        return hunter.getInventory();
+    }
+
+    public String hunterToString() {
+        return hunter.toString();
+    }
+
+    public int getCostOfItem(String item) {
+        return shop.getCostOfItem(item);
+    }
+
+    public int checkMarketPrice(String item, boolean isBuying) {
+        return shop.checkMarketPrice(item, isBuying);
+    }
+
+    public String shopInventory() {
+        return shop.inventory();
+    }
+
+    public boolean leaveTown() {
+        boolean left = town.leaveTown();
+        townHunter.addAll();
+        return left;
+    }
+
+    public int lookForTrouble() {
+        town.lookForTrouble();
+        if (townHunter.getGold() < 20) {
+            townHunter.changeGold(100);
+        }
+        return townHunter.getGold();
+    }
+
+    public void addTextToWindow(String text) {
+        window.clear();
+        window.addTextToWindow(text, TextColor.BLUE);
+        window.flush();
+    }
+
+    public void redrawMenu() {
+        // a typical turn: the news stays the same and the hunter's gold goes up or down
+        hunter.changeGold(hunter.getGold() > 100 ? -1 : 1);
+        view.show(window, "You couldn't find any trouble", hunter, town);
+    }
+
+    public void processChoice(String choice) {
+        game.processChoice(choice);
+    }
+}
@@ -0,0 +1,49 @@
+package bench;
+
+/**
+ * The game's classes live in the default package, which JMH benchmarks can't import from.
+ * GameHooks is the bridge: its one implementation, {@code BenchmarkHooks}, sits in the default
+ * package next to the game and is loaded by name. Every benchmark state gets a fresh instance,
+ * so the interface call site stays monomorphic and is inlined by the JIT.
+ */
+public interface GameHooks {
+    // Hunter
+    boolean hasItemInKit(String item);
+
+    boolean addAndRemoveItem(String item);
+
+    String getInventory();
+
+    String hunterToString();
+
+    // Shop
+    int getCostOfItem(String item);
+
+    int checkMarketPrice(String item, boolean isBuying);
+
+    String shopInventory();
+
+    // Town
+    boolean leaveTown();
+
+    int lookForTrouble();
+
+    // OutputWindow
+    void addTextToWindow(String text);
+
+    void redrawMenu();
+
+    // TreasureHunter
+    void processChoice(String choice);
+
+    /**
+     * @return A new set of game objects to benchmark against.
+     */
+    static GameHooks create() {
+        try {
+            return (GameHooks) Class.forName("BenchmarkHooks").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchmarkHooks is missing from the classpath", e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the Hunter's kit and the text it builds for the status screen.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HunterBenchmark {
+    private GameHooks hooks;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        hooks = GameHooks.create();
+    }
+
+    @Benchmark
+    public boolean hasItemInKitFound() {
+        return hooks.hasItemInKit("horse");
+    }
+
+    @Benchmark
+    public boolean hasItemInKitMissing() {
+        return hooks.hasItemInKit("boat");
+    }
+
+    @Benchmark
+    public boolean addAndRemoveItem() {
+        return hooks.addAndRemoveItem("boots");
+    }
+
+    @Benchmark
+    public String getInventory() {
+        return hooks.getInventory();
+    }
+
+    @Benchmark
+    public String hunterToString() {
+        return hooks.hunterToString();
+    }
+}
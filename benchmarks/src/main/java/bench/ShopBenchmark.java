@@ -0,0 +1,52 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the Shop's price lookups and its listing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShopBenchmark {
+    private GameHooks hooks;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        hooks = GameHooks.create();
+    }
+
+    @Benchmark
+    public int getCostOfFirstItem() {
+        return hooks.getCostOfItem("water");
+    }
+
+    @Benchmark
+    public int getCostOfLastItem() {
+        return hooks.getCostOfItem("boots");
+    }
+
+    @Benchmark
+    public int checkMarketPriceSelling() {
+        return hooks.checkMarketPrice("boat", false);
+    }
+
+    @Benchmark
+    public String inventory() {
+        return hooks.shopInventory();
+    }
+}
@@ -0,0 +1,43 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks one full turn through processChoice, cycling through the menu actions that
+ * don't wait for more input.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TurnBenchmark {
+    private GameHooks hooks;
+
+    private static final String[] CHOICES = {"l", "d", "h", "me", "q"};
+
+    private int turn;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        hooks = GameHooks.create();
+        turn = 0;
+    }
+
+    @Benchmark
+    public void processChoice() {
+        hooks.processChoice(CHOICES[turn++ % CHOICES.length]);
+    }
+}